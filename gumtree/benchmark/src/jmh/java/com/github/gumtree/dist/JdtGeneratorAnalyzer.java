@@ -0,0 +1,122 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+package com.github.gumtree.dist;
+
+import com.github.gumtreediff.gen.jdt.AbstractJdtVisitor;
+import com.github.gumtreediff.tree.TreeContext;
+import edu.lu.uni.serval.gen.jdt.exp.ExpJdtTreeGenerator;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses the Java files of srcPath one per operation, so that the throughput reads as files per
+ * second. testFreshParser reproduces the generator as it was before the parsers were kept per
+ * thread: a new parser and compiler options for every file, read through a FileReader.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JdtGeneratorAnalyzer {
+    @State(Scope.Benchmark)
+    public static class SourceData {
+        @Setup
+        public void load() throws IOException {
+            try (Stream<Path> paths = Files.walk(Paths.get(srcPath))) {
+                files = paths.filter(p -> p.toString().endsWith(".java")).map(Path::toFile)
+                        .collect(Collectors.toList());
+            }
+            if (files.isEmpty())
+                throw new IllegalStateException("No java file in " + srcPath);
+        }
+
+        @Param({"../gen.jdt/src/main/java"})
+        public String srcPath;
+
+        public List<File> files;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = 0;
+
+        public File next(SourceData d) {
+            File file = d.files.get(next);
+            next = (next + 1) % d.files.size();
+            return file;
+        }
+    }
+
+    @Benchmark
+    public TreeContext testFreshParser(SourceData d, Cursor c) throws IOException {
+        return new FreshParserTreeGenerator().generateFromReader(new FileReader(c.next(d)));
+    }
+
+    @Benchmark
+    public TreeContext testThreadParser(SourceData d, Cursor c) throws IOException {
+        return new ExpJdtTreeGenerator().generateFromFile(c.next(d));
+    }
+
+    private static class FreshParserTreeGenerator extends ExpJdtTreeGenerator {
+        @Override
+        public TreeContext generate(Reader r, int astParserType) throws IOException {
+            ASTParser parser = ASTParser.newParser(AST.JLS8);
+            parser.setKind(astParserType);
+            Map<String, String> pOptions = JavaCore.getOptions();
+            pOptions.put(JavaCore.COMPILER_COMPLIANCE, JavaCore.VERSION_1_8);
+            pOptions.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JavaCore.VERSION_1_8);
+            pOptions.put(JavaCore.COMPILER_SOURCE, JavaCore.VERSION_1_8);
+            pOptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
+            parser.setCompilerOptions(pOptions);
+            parser.setSource(readWithStringBuilder(r));
+            AbstractJdtVisitor v = createVisitor();
+            parser.createAST(null).accept(v);
+            return v.getTreeContext();
+        }
+
+        private static char[] readWithStringBuilder(Reader r) throws IOException {
+            StringBuilder fileData = new StringBuilder();
+            try (BufferedReader br = new BufferedReader(r)) {
+                char[] buf = new char[10];
+                int numRead = 0;
+                while ((numRead = br.read(buf)) != -1) {
+                    fileData.append(String.valueOf(buf, 0, numRead));
+                    buf = new char[1024];
+                }
+            }
+            return fileData.toString().toCharArray();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+
+package com.github.gumtree.dist;
+
+import com.github.gumtreediff.io.TreeIoUtils;
+import com.github.gumtreediff.matchers.CompositeMatchers;
+import com.github.gumtreediff.matchers.IdMappingStore;
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.tree.ITree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+/**
+ * Compares MappingStore and IdMappingStore on the lookups the matchers and the action generator
+ * do the most, and on a whole match.
+ */
+public class MappingStoreAnalyzer {
+    @State(Scope.Benchmark)
+    public static class TreeData {
+        @Setup
+        public void load() {
+            try {
+                String otherPath = refPath.replace("_v0_", "_v1_");
+                src = TreeIoUtils.fromXml().generateFromFile(refPath).getRoot();
+                dst = TreeIoUtils.fromXml().generateFromFile(otherPath).getRoot();
+                Matcher m = new CompositeMatchers.ClassicGumtree(src, dst, new MappingStore());
+                m.match();
+                hashMappings = m.getMappings();
+                idMappings = new IdMappingStore(src, dst);
+                hashMappings.forEachMapping(idMappings::link);
+                srcTrees = src.getTrees();
+                dstTrees = dst.getTrees();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Param({})
+        public String refPath;
+
+        public ITree src;
+
+        public ITree dst;
+
+        public List<ITree> srcTrees;
+
+        public List<ITree> dstTrees;
+
+        public MappingStore hashMappings;
+
+        public MappingStore idMappings;
+    }
+
+    private static int lookups(MappingStore mappings, List<ITree> srcTrees, List<ITree> dstTrees) {
+        int found = 0;
+        for (int i = 0; i < srcTrees.size(); i++) {
+            ITree s = srcTrees.get(i);
+            if (mappings.hasSrc(s) && mappings.getDst(s) != null)
+                found++;
+            if (mappings.isMatchable(s, dstTrees.get(i % dstTrees.size())))
+                found++;
+        }
+        for (ITree d: dstTrees)
+            if (mappings.hasDst(d))
+                found++;
+        return found;
+    }
+
+    private static int copyAndIterate(MappingStore mappings) {
+        MappingStore copy = mappings.copy();
+        int[] count = new int[1];
+        copy.forEachMapping((s, d) -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public int testHashLookups(TreeData d) {
+        return lookups(d.hashMappings, d.srcTrees, d.dstTrees);
+    }
+
+    @Benchmark
+    public int testIdLookups(TreeData d) {
+        return lookups(d.idMappings, d.srcTrees, d.dstTrees);
+    }
+
+    @Benchmark
+    public int testHashCopy(TreeData d) {
+        return copyAndIterate(d.hashMappings);
+    }
+
+    @Benchmark
+    public int testIdCopy(TreeData d) {
+        return copyAndIterate(d.idMappings);
+    }
+
+    @Benchmark
+    public void testClassicGumtreeHash(TreeData d) {
+        new CompositeMatchers.ClassicGumtree(d.src, d.dst, new MappingStore()).match();
+    }
+
+    @Benchmark
+    public void testClassicGumtreeId(TreeData d) {
+        new CompositeMatchers.ClassicGumtree(d.src, d.dst, new IdMappingStore(d.src, d.dst)).match();
+    }
+}
@@ -93,6 +93,12 @@ public class Serializer extends Client {
             TreeIoUtils.TreeSerializer getSerializer(TreeContext ctx) {
                 return TreeIoUtils.toLisp(ctx);
             }
+        },
+        BINARY {
+            @Override
+            TreeIoUtils.TreeSerializer getSerializer(TreeContext ctx) {
+                return TreeIoUtils.toBinary(ctx);
+            }
         };
 
         abstract TreeIoUtils.TreeSerializer getSerializer(TreeContext ctx);
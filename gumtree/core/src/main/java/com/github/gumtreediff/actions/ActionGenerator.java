@@ -21,59 +21,77 @@
 package com.github.gumtreediff.actions;
 
 import com.github.gumtreediff.actions.model.*;
-import com.github.gumtreediff.matchers.Mapping;
 import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.tree.AbstractTree;
 import com.github.gumtreediff.tree.ITree;
-import com.github.gumtreediff.tree.TreeUtils;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import com.github.gumtreediff.utils.ScratchBuffers;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+/**
+ * Computes the edit script of two trees with the algorithm of Chawathe et al. The script is computed
+ * by editing the source tree in place, and the edits are undone before {@link #generate()} returns,
+ * so the source tree is not copied.
+ */
 public class ActionGenerator {
 
     private ITree origSrc;
 
-    private ITree newSrc;
-
     private ITree origDst;
 
     private MappingStore origMappings;
 
-    private MappingStore newMappings;
+    /**
+     * Mappings of the nodes inserted in the source tree.
+     */
+    private MappingStore insertedMappings;
+
+    /**
+     * The node of the destination tree standing for each node inserted in the source tree.
+     */
+    private Map<ITree, ITree> insertedTrees;
+
+    /**
+     * The original children and parents of the source nodes edited by the script.
+     */
+    private Map<ITree, List<ITree>> savedChildren;
+
+    private Map<ITree, ITree> savedParents;
+
+    /**
+     * The nodes of the destination tree, the fake root first and then origDst in breadth first
+     * order. The children of a node are consecutive in this order, so a destination node is found
+     * by the index of its parent and its position in the parent.
+     */
+    private List<ITree> dstNodes;
+
+    private TIntArrayList dstParents;
 
-    private Set<ITree> dstInOrder;
+    private TIntArrayList dstFirstChildren;
 
-    private Set<ITree> srcInOrder;
+    /**
+     * The destination nodes in order, by index in dstNodes.
+     */
+    private BitSet dstInOrder;
 
     private int lastId;
 
     private List<Action> actions;
 
-    private TIntObjectMap<ITree> origSrcTrees;
-
-    private TIntObjectMap<ITree> cpySrcTrees;
+    private final TIntIntMap ranks = new TIntIntHashMap();
 
     public ActionGenerator(ITree src, ITree dst, MappingStore mappings) {
         this.origSrc = src;
-        this.newSrc = this.origSrc.deepCopy();
         this.origDst = dst;
-
-        origSrcTrees = new TIntObjectHashMap<>();
-        for (ITree t: origSrc.getTrees())
-            origSrcTrees.put(t.getId(), t);
-        cpySrcTrees = new TIntObjectHashMap<>();
-        for (ITree t: newSrc.getTrees())
-            cpySrcTrees.put(t.getId(), t);
-
-        origMappings = new MappingStore();
-        for (Mapping m: mappings)
-            this.origMappings.link(cpySrcTrees.get(m.getFirst().getId()), m.getSecond());
-        this.newMappings = origMappings.copy();
+        this.origMappings = mappings;
     }
 
     public List<Action> getActions() {
@@ -81,183 +99,308 @@ public class ActionGenerator {
     }
 
     public List<Action> generate() {
-        ITree srcFakeRoot = new AbstractTree.FakeTree(newSrc);
+        ITree srcFakeRoot = new AbstractTree.FakeTree(origSrc);
         ITree dstFakeRoot = new AbstractTree.FakeTree(origDst);
-        newSrc.setParent(srcFakeRoot);
-        origDst.setParent(dstFakeRoot);
+        insertedMappings = new MappingStore();
+        insertedTrees = new HashMap<>();
+        savedChildren = new HashMap<>();
+        savedParents = new HashMap<>();
+        try {
+            setParent(origSrc, srcFakeRoot);
+            origDst.setParent(dstFakeRoot);
+            generate(srcFakeRoot, dstFakeRoot);
+        } finally {
+            undoEdits();
+        }
+        return actions;
+    }
 
+    private void generate(ITree srcFakeRoot, ITree dstFakeRoot) {
         actions = new ArrayList<>();
-        dstInOrder = new HashSet<>();
-        srcInOrder = new HashSet<>();
+        indexDst(dstFakeRoot);
+        dstInOrder = new BitSet(dstNodes.size());
 
-        lastId = newSrc.getSize() + 1;
-        newMappings.link(srcFakeRoot, dstFakeRoot);
+        lastId = origSrc.getSize() + 1;
+        insertedMappings.link(srcFakeRoot, dstFakeRoot);
 
-        List<ITree> bfsDst = TreeUtils.breadthFirst(origDst);
-        for (ITree x: bfsDst) {
+        for (int xi = 1; xi < dstNodes.size(); xi++) {
+            Matcher.checkInterrupted();
+            ITree x = dstNodes.get(xi);
             ITree w = null;
             ITree y = x.getParent();
-            ITree z = newMappings.getSrc(y);
+            ITree z = getSrc(y);
 
-            if (!newMappings.hasDst(x)) {
-                int k = findPos(x);
+            if (!hasDst(x)) {
+                int k = findPos(xi);
                 // Insertion case : insert new node.
                 w = new AbstractTree.FakeTree();
                 w.setId(newId());
                 // In order to use the real nodes from the second tree, we
                 // furnish x instead of w and fake that x has the newly
                 // generated ID.
-                Action ins = new Insert(x, origSrcTrees.get(z.getId()), k);
+                Action ins = new Insert(x, original(z), k);
                 actions.add(ins);
                 //System.out.println(ins);
-                origSrcTrees.put(w.getId(), x);
-                newMappings.link(w, x);
+                insertedTrees.put(w, x);
+                insertedMappings.link(w, x);
+                saveChildren(z);
                 z.getChildren().add(k, w);
                 w.setParent(z);
             } else {
-                w = newMappings.getSrc(x);
-                if (!x.equals(origDst)) { // TODO => x != origDst // Case of the root
+                w = getSrc(x);
+                if (xi != 1) { // Case of the root
                     ITree v = w.getParent();
-                    if (!w.getLabel().equals(x.getLabel())) {
-                        actions.add(new Update(origSrcTrees.get(w.getId()), x));
-                        w.setLabel(x.getLabel());
-                    }
+                    // w is not visited again, so its label is left as is.
+                    if (!w.hasSameLabel(x))
+                        actions.add(new Update(original(w), x));
                     if (!z.equals(v)) {
-                        int k = findPos(x);
-//                        Action mv = new Move(origSrcTrees.get(w.getId()), origSrcTrees.get(z.getId()), k);
-                        Action mv = new Move(origSrcTrees.get(w.getId()), origSrcTrees.get(z.getId()), x, k);
+                        int k = findPos(xi);
+//                        Action mv = new Move(original(w), original(z), k);
+                        Action mv = new Move(original(w), original(z), x, k);
                         actions.add(mv);
                         //System.out.println(mv);
-                        int oldk = w.positionInParent();
-                        z.getChildren().add(k, w);
-                        w.getParent().getChildren().remove(oldk);
-                        w.setParent(z);
+                        move(w, z, k);
                     }
                 }
             }
 
             //FIXME not sure why :D
-            srcInOrder.add(w);
-            dstInOrder.add(x);
-            alignChildren(w, x);
+            dstInOrder.set(xi);
+            alignChildren(w, xi);
         }
 
-        for (ITree w : newSrc.postOrder()) {
-            if (!newMappings.hasSrc(w)) {
-                actions.add(new Delete(origSrcTrees.get(w.getId())));
+        for (ITree w : origSrc.postOrder()) {
+            if (!hasSrc(w)) {
+                actions.add(new Delete(original(w)));
                 //w.getParent().getChildren().remove(w);
             }
         }
 
         //FIXME should ensure isomorphism.
-        return actions;
     }
 
-    private void alignChildren(ITree w, ITree x) {
-        srcInOrder.removeAll(w.getChildren());
-        dstInOrder.removeAll(x.getChildren());
+    private void indexDst(ITree dstFakeRoot) {
+        dstNodes = new ArrayList<>();
+        dstParents = new TIntArrayList();
+        dstFirstChildren = new TIntArrayList();
+        dstNodes.add(dstFakeRoot);
+        dstParents.add(-1);
+        for (int i = 0; i < dstNodes.size(); i++) {
+            dstFirstChildren.add(dstNodes.size());
+            for (ITree c : dstNodes.get(i).getChildren()) {
+                dstNodes.add(c);
+                dstParents.add(i);
+            }
+        }
+    }
 
-        List<ITree> s1 = new ArrayList<>();
-        for (ITree c: w.getChildren())
-            if (newMappings.hasSrc(c))
-                if (x.getChildren().contains(newMappings.getDst(c)))
-                    s1.add(c);
+    private void alignChildren(ITree w, int xi) {
+        ITree x = dstNodes.get(xi);
+        List<ITree> dstChildren = x.getChildren();
+        int first = dstFirstChildren.get(xi);
+        dstInOrder.clear(first, first + dstChildren.size());
+
+        // s2 holds the positions in x of the children mapped to children of w, and ranks the ids
+        // of these children of w by their order in s2.
+        TIntArrayList s2 = new TIntArrayList();
+        ranks.clear();
+        for (int j = 0; j < dstChildren.size(); j++) {
+            ITree c = getSrc(dstChildren.get(j));
+            if (c != null && c.getParent() == w) {
+                ranks.put(c.getId(), s2.size());
+                s2.add(j);
+            }
+        }
 
-        List<ITree> s2 = new ArrayList<>();
-        for (ITree c: x.getChildren())
-            if (newMappings.hasDst(c))
-                if (w.getChildren().contains(newMappings.getSrc(c)))
-                    s2.add(c);
+        // p[i] is the rank in s2 of the child of x mapped to s1[i].
+        List<ITree> s1 = new ArrayList<>(s2.size());
+        int[] p = new int[s2.size()];
+        for (ITree c: w.getChildren()) {
+            if (ranks.containsKey(c.getId()) && getDst(c).getParent() == x) {
+                p[s1.size()] = ranks.get(c.getId());
+                s1.add(c);
+            }
+        }
 
-        List<Mapping> lcs = lcs(s1, s2);
+        boolean[] inLcs = lcs(p);
 
-        for (Mapping m : lcs) {
-            srcInOrder.add(m.getFirst());
-            dstInOrder.add(m.getSecond());
+        for (int i = 0; i < s1.size(); i++) {
+            if (inLcs[i])
+                dstInOrder.set(first + s2.get(p[i]));
         }
 
-        for (ITree a : s1) {
-            for (ITree b: s2 ) {
-                if (origMappings.has(a, b)) {
-                    if (!lcs.contains(new Mapping(a, b))) {
-                        int k = findPos(b);
-//                        Action mv = new Move(origSrcTrees.get(a.getId()), origSrcTrees.get(w.getId()), k);
-                        Action mv = new Move(origSrcTrees.get(a.getId()), origSrcTrees.get(w.getId()), b, k);
-                        actions.add(mv);
-                        //System.out.println(mv);
-                        int oldk = a.positionInParent();
-                        w.getChildren().add(k, a);
-                        if (k  < oldk ) // FIXME this is an ugly way to patch the index
-                            oldk ++;
-                        a.getParent().getChildren().remove(oldk);
-                        a.setParent(w);
-                        srcInOrder.add(a);
-                        dstInOrder.add(b);
-                    }
+        for (int i = 0; i < s1.size(); i++) {
+            ITree a = s1.get(i);
+            int bi = first + s2.get(p[i]);
+            ITree b = dstNodes.get(bi);
+            if (origMappings.has(a, b)) {
+                if (!inLcs[i]) {
+                    int k = findPos(bi);
+//                    Action mv = new Move(original(a), original(w), k);
+                    Action mv = new Move(original(a), original(w), b, k);
+                    actions.add(mv);
+                    //System.out.println(mv);
+                    move(a, w, k);
+                    dstInOrder.set(bi);
                 }
             }
         }
     }
 
-    private int findPos(ITree x) {
-        ITree y = x.getParent();
-        List<ITree> siblings = y.getChildren();
+    private int findPos(int xi) {
+        int first = dstFirstChildren.get(dstParents.get(xi));
 
-        for (ITree c : siblings) {
-            if (dstInOrder.contains(c)) {
-                if (c.equals(x)) return 0;
-                else break;
-            }
-        }
+        // x is the first of its siblings in order.
+        if (dstInOrder.nextSetBit(first) == xi)
+            return 0;
 
-        int xpos = x.positionInParent();
-        ITree v = null;
-        for (int i = 0; i < xpos; i++) {
-            ITree c = siblings.get(i);
-            if (dstInOrder.contains(c)) v = c;
-        }
+        // v is the rightmost sibling in order on the left of x.
+        int vi = xi == first ? -1 : dstInOrder.previousSetBit(xi - 1);
 
         //if (v == null) throw new RuntimeException("No rightmost sibling in order");
-        if (v == null) return 0;
+        if (vi < first) return 0;
 
-        ITree u = newMappings.getSrc(v);
-        // siblings = u.getParent().getChildren();
-        // int upos = siblings.indexOf(u);
+        ITree u = getSrc(dstNodes.get(vi));
         int upos = u.positionInParent();
-        // int r = 0;
-        // for (int i = 0; i <= upos; i++)
-        // if (srcInOrder.contains(siblings.get(i))) r++;
         return upos + 1;
     }
 
+    private ITree getSrc(ITree dst) {
+        ITree src = origMappings.getSrc(dst);
+        return src != null ? src : insertedMappings.getSrc(dst);
+    }
+
+    private ITree getDst(ITree src) {
+        ITree dst = origMappings.getDst(src);
+        return dst != null ? dst : insertedMappings.getDst(src);
+    }
+
+    private boolean hasSrc(ITree src) {
+        return origMappings.hasSrc(src) || insertedMappings.hasSrc(src);
+    }
+
+    private boolean hasDst(ITree dst) {
+        return origMappings.hasDst(dst) || insertedMappings.hasDst(dst);
+    }
+
+    /**
+     * The node to report in the actions for a node of the edited source tree: the node itself, or
+     * the destination node it stands for if it has been inserted.
+     */
+    private ITree original(ITree t) {
+        ITree x = insertedTrees.get(t);
+        return x != null ? x : t;
+    }
+
+    private void move(ITree t, ITree parent, int k) {
+        ITree oldParent = t.getParent();
+        int oldk = t.positionInParent();
+        saveChildren(parent);
+        saveChildren(oldParent);
+        parent.getChildren().add(k, t);
+        if (parent == oldParent && k  < oldk ) // FIXME this is an ugly way to patch the index
+            oldk ++;
+        oldParent.getChildren().remove(oldk);
+        setParent(t, parent);
+    }
+
+    private void saveChildren(ITree t) {
+        if (!savedChildren.containsKey(t))
+            savedChildren.put(t, new ArrayList<>(t.getChildren()));
+    }
+
+    private void setParent(ITree t, ITree parent) {
+        if (!savedParents.containsKey(t))
+            savedParents.put(t, t.getParent());
+        t.setParent(parent);
+    }
+
+    private void undoEdits() {
+        for (Map.Entry<ITree, List<ITree>> e : savedChildren.entrySet()) {
+            List<ITree> children = e.getKey().getChildren();
+            children.clear();
+            children.addAll(e.getValue());
+        }
+        for (Map.Entry<ITree, ITree> e : savedParents.entrySet())
+            e.getKey().setParent(e.getValue());
+        savedChildren = null;
+        savedParents = null;
+    }
+
     private int newId() {
         return ++lastId;
     }
 
-    private List<Mapping> lcs(List<ITree> x, List<ITree> y) {
-        int m = x.size();
-        int n = y.size();
-        List<Mapping> lcs = new ArrayList<>();
-
-        int[][] opt = new int[m + 1][n + 1];
-        for (int i = m - 1; i >= 0; i--) {
-            for (int j = n - 1; j >= 0; j--) {
-                if (newMappings.getSrc(y.get(j)).equals(x.get(i))) opt[i][j] = opt[i + 1][j + 1] + 1;
-                else  opt[i][j] = Math.max(opt[i + 1][j], opt[i][j + 1]);
+    /**
+     * Longest common subsequence of two sequences of nodes where the i-th node of the first one is
+     * mapped to the p[i]-th node of the second one. As p is a permutation, this is a longest
+     * increasing subsequence of p, computed in O(n log n). Among the longest ones, it is the one
+     * the dynamic programming table of the two sequences would give when preferring to skip a
+     * node of the first sequence, so the edit script does not depend on the algorithm.
+     *
+     * @return whether each node of the first sequence is in the subsequence
+     */
+    static boolean[] lcs(int[] p) {
+        int n = p.length;
+        boolean[] inLcs = new boolean[n];
+        if (n == 0)
+            return inLcs;
+
+        // level[i] is the length of the longest increasing subsequence starting at i, found from
+        // the right: starts[l - 1] is the largest p value starting such a subsequence of length l.
+        int[] level = new int[n];
+        int[] starts = ScratchBuffers.ints(0, n);
+        int max = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            int lo = 0;
+            int hi = max;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] > p[i]) lo = mid + 1;
+                else hi = mid;
             }
+            starts[lo] = p[i];
+            level[i] = lo + 1;
+            if (lo == max)
+                max++;
         }
 
-        int i = 0, j = 0;
-        while (i < m && j < n) {
-            if (newMappings.getSrc(y.get(j)).equals(x.get(i))) {
-                lcs.add(new Mapping(x.get(i), y.get(j)));
-                i++;
-                j++;
-            } else if (opt[i + 1][j] >= opt[i][j + 1]) i++;
-            else j++;
+        // The indices of each level in increasing order, their p values being decreasing.
+        int[] byLevel = new int[n];
+        int[] levelStarts = new int[max + 2];
+        for (int i = 0; i < n; i++)
+            levelStarts[level[i] + 1]++;
+        for (int l = 1; l <= max + 1; l++)
+            levelStarts[l] += levelStarts[l - 1];
+        int[] fill = ScratchBuffers.ints(1, max + 1);
+        System.arraycopy(levelStarts, 0, fill, 0, max + 1);
+        for (int i = 0; i < n; i++)
+            byLevel[fill[level[i]]++] = i;
+
+        int[] inverse = new int[n];
+        for (int i = 0; i < n; i++)
+            inverse[p[i]] = i;
+
+        // The table walk from (i, j) goes down column j up to the last node of the current level
+        // with a p value of at least j, matching the node of column j if it meets it on the way,
+        // and otherwise goes right up to the p value of that last node.
+        int i = 0;
+        int j = 0;
+        for (int l = max; l > 0; l--) {
+            int lo = levelStarts[l];
+            int hi = levelStarts[l + 1];
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (p[byLevel[mid]] >= j) lo = mid + 1;
+                else hi = mid;
+            }
+            int last = byLevel[lo - 1];
+            int matched = inverse[j] >= i && inverse[j] <= last ? inverse[j] : last;
+            inLcs[matched] = true;
+            i = matched + 1;
+            j = p[matched] + 1;
         }
-
-        return lcs;
+        return inLcs;
     }
 
-}
\ No newline at end of file
+}
@@ -26,13 +26,19 @@ import java.io.*;
 
 public abstract class TreeGenerator {
 
+    /**
+     * Whether the generated trees are replaced by compact trees, which take less memory.
+     * @see TreeContext#compact()
+     */
+    public static boolean COMPACT_TREES = Boolean.parseBoolean(System.getProperty("gt.gen.compact", "false"));
+
     protected abstract TreeContext generate(Reader r) throws IOException;
     
     protected abstract TreeContext generate(Reader r, int astParserType) throws IOException;
 
     public TreeContext generateFromReader(Reader r) throws IOException {
         TreeContext ctx = generate(r);
-        ctx.validate();
+        validate(ctx);
         return ctx;
     }
 
@@ -54,7 +60,7 @@ public abstract class TreeGenerator {
     
     public TreeContext generateFromReader(Reader r, int astParserType) throws IOException {
         TreeContext ctx = generate(r, astParserType);
-        ctx.validate();
+        validate(ctx);
         return ctx;
     }
 
@@ -73,4 +79,11 @@ public abstract class TreeGenerator {
     public TreeContext generateFromString(String content, int astParserType) throws IOException {
         return generateFromReader(new StringReader(content), astParserType);
     }
+
+    protected static void validate(TreeContext ctx) {
+        if (COMPACT_TREES)
+            ctx.compact();
+        else
+            ctx.validate();
+    }
 }
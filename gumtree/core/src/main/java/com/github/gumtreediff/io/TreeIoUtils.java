@@ -37,6 +37,11 @@ import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
@@ -116,6 +121,20 @@ public final class TreeIoUtils {
         };
     }
 
+    public static BinarySerializer toBinary(TreeContext ctx) {
+        return new BinarySerializer(ctx);
+    }
+
+    public static BinaryTreeReader fromBinary() {
+        return new BinaryTreeReader();
+    }
+
+    public static BinaryTreeReader fromBinary(MetadataUnserializers unserializers) {
+        BinaryTreeReader reader = new BinaryTreeReader();
+        reader.getUnserializers().addAll(unserializers);
+        return reader;
+    }
+
     public abstract static class AbstractSerializer {
 
         public abstract void writeTo(Writer writer) throws Exception;
@@ -600,6 +619,304 @@ public final class TreeIoUtils {
         }
     }
 
+    /**
+     * Writes a tree in a compact binary format, much faster to read back than the text formats.
+     * The stream starts with a header (the bytes GTB and a version byte), followed by the type labels,
+     * a dictionary of the distinct labels and the context metadata. The nodes come next in pre-order,
+     * each one as its type, the index of its label in the dictionary, its position, its length,
+     * its number of children and its metadata. Integers are varints and strings are UTF-8 bytes
+     * prefixed by their length.
+     *
+     * @see BinaryTreeReader
+     */
+    public static class BinarySerializer extends TreeSerializer {
+
+        public BinarySerializer(TreeContext ctx) {
+            super(ctx);
+        }
+
+        /**
+         * Never called: {@link #writeTo(Writer)} is overridden, the binary format is only written to streams.
+         */
+        @Override
+        protected TreeFormatter newFormatter(TreeContext ctx, MetadataSerializers serializers, Writer writer) {
+            throw new UnsupportedOperationException("The binary format can only be written to a stream");
+        }
+
+        /**
+         * Writes the binary form encoded in Base64, since a writer only accepts text. This is
+         * also what {@link #toString()} returns.
+         */
+        @Override
+        public void writeTo(Writer writer) throws Exception {
+            writer.write(Base64.getEncoder().encodeToString(toByteArray()));
+            writer.flush();
+        }
+
+        @Override
+        public void writeTo(OutputStream stream) throws Exception {
+            TreeFormatter formatter = new BinaryFormatter(stream, context);
+            try {
+                writeTree(formatter, context.getRoot());
+            } finally {
+                formatter.close();
+            }
+        }
+
+        @Override
+        public void writeTo(String file) throws Exception {
+            writeTo(new File(file));
+        }
+
+        @Override
+        public void writeTo(File file) throws Exception {
+            try (OutputStream os = new FileOutputStream(file)) {
+                writeTo(os);
+            }
+        }
+
+        public byte[] toByteArray() {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try {
+                writeTo(bos);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return bos.toByteArray();
+        }
+    }
+
+    static class BinaryFormatter extends TreeFormatterAdapter {
+        static final byte[] MAGIC = {'G', 'T', 'B'};
+        static final int VERSION = 1;
+
+        private final BinaryOutput out;
+        private final Map<String, Integer> labels = new HashMap<>();
+        private final List<String> attributes = new ArrayList<>();
+
+        BinaryFormatter(OutputStream os, TreeContext ctx) {
+            super(ctx);
+            out = new BinaryOutput(os);
+        }
+
+        @Override
+        public void startSerialization() throws IOException {
+            Map<Integer, String> typeLabels = new LinkedHashMap<>();
+            List<String> dictionary = new ArrayList<>();
+            TreeUtils.preOrder(context.getRoot(), t -> {
+                if (context.hasLabelFor(t.getType()))
+                    typeLabels.putIfAbsent(t.getType(), context.getTypeLabel(t.getType()));
+                if (labels.putIfAbsent(t.getLabel(), dictionary.size()) == null)
+                    dictionary.add(t.getLabel());
+            });
+
+            for (byte b : MAGIC)
+                out.writeByte(b);
+            out.writeByte(VERSION);
+            out.writeVarInt(typeLabels.size());
+            for (Entry<Integer, String> e : typeLabels.entrySet()) {
+                out.writeSignedVarInt(e.getKey());
+                out.writeString(e.getValue());
+            }
+            out.writeVarInt(dictionary.size());
+            for (String label : dictionary)
+                out.writeString(label);
+        }
+
+        @Override
+        public void serializeAttribute(String name, String value) {
+            attributes.add(name);
+            attributes.add(value);
+        }
+
+        @Override
+        public void endProlog() throws IOException {
+            writeAttributes();
+        }
+
+        @Override
+        public void startTree(ITree tree) {
+            attributes.clear();
+        }
+
+        @Override
+        public void endTreeProlog(ITree tree) throws IOException {
+            out.writeSignedVarInt(tree.getType());
+            out.writeVarInt(labels.get(tree.getLabel()));
+            out.writeSignedVarInt(tree.getPos());
+            out.writeSignedVarInt(tree.getLength());
+            out.writeVarInt(tree.getChildren().size());
+            writeAttributes();
+        }
+
+        private void writeAttributes() throws IOException {
+            out.writeVarInt(attributes.size() / 2);
+            for (String s : attributes)
+                out.writeString(s);
+            attributes.clear();
+        }
+
+        @Override
+        public void stopSerialization() throws IOException {
+            out.flush();
+        }
+    }
+
+    static class BinaryOutput {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int size = 0;
+
+        BinaryOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int b) throws IOException {
+            if (size == buffer.length)
+                drain();
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeSignedVarInt(int value) throws IOException {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            if (bytes.length > buffer.length - size) {
+                drain();
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+
+    abstract static class BinaryInput {
+        abstract int readByte() throws IOException;
+
+        abstract String readString(int length) throws IOException;
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readSignedVarInt() throws IOException {
+            int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() throws IOException {
+            return readString(readVarInt());
+        }
+    }
+
+    static class StreamInput extends BinaryInput {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position = 0;
+        private int limit = 0;
+
+        StreamInput(InputStream in) {
+            this.in = in;
+        }
+
+        private boolean fill() throws IOException {
+            position = 0;
+            limit = Math.max(0, in.read(buffer));
+            return limit > 0;
+        }
+
+        @Override
+        int readByte() throws IOException {
+            if (position == limit && !fill())
+                throw new EOFException();
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        String readString(int length) throws IOException {
+            if (length <= limit - position) {
+                String s = new String(buffer, position, length, StandardCharsets.UTF_8);
+                position += length;
+                return s;
+            }
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                if (position == limit && !fill())
+                    throw new EOFException();
+                int n = Math.min(length - read, limit - position);
+                System.arraycopy(buffer, position, bytes, read, n);
+                position += n;
+                read += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    static class BufferInput extends BinaryInput {
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        int readByte() throws IOException {
+            if (!buffer.hasRemaining())
+                throw new EOFException();
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        String readString(int length) throws IOException {
+            if (length > buffer.remaining())
+                throw new EOFException();
+            String s;
+            if (buffer.hasArray())
+                s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                        StandardCharsets.UTF_8);
+            else {
+                byte[] bytes = new byte[length];
+                buffer.duplicate().get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            // Cast so that the call links against Buffer.position(int) on Java 8 too.
+            ((Buffer) buffer).position(buffer.position() + length);
+            return s;
+        }
+    }
+
     @Register(id = "xml", accept = "\\.gxml$")
     // TODO Since it is not in the right package, I'm not even sure it is visible in the registry
     // TODO should we move this class elsewhere (another package)
@@ -696,4 +1013,119 @@ public final class TreeIoUtils {
             return unserializers;
         }
     }
+
+    /**
+     * Reads the trees written by {@link BinarySerializer}, either from a stream or directly from a
+     * {@link ByteBuffer}. Files are memory mapped and decoded in place, without being copied first.
+     */
+    public static class BinaryTreeReader {
+        final MetadataUnserializers unserializers = new MetadataUnserializers();
+
+        public BinaryTreeReader() {
+            unserializers.addAll(XmlInternalGenerator.defaultUnserializers);
+        }
+
+        public TreeContext read(InputStream stream) throws IOException {
+            return read(new StreamInput(stream));
+        }
+
+        public TreeContext read(byte[] data) throws IOException {
+            return read(ByteBuffer.wrap(data));
+        }
+
+        /**
+         * Read a tree starting at the position of the given buffer, which is left untouched.
+         */
+        public TreeContext read(ByteBuffer buffer) throws IOException {
+            return read(new BufferInput(buffer.duplicate()));
+        }
+
+        public TreeContext read(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        public TreeContext read(String path) throws IOException {
+            return read(new File(path));
+        }
+
+        private TreeContext read(BinaryInput in) throws IOException {
+            for (byte b : BinaryFormatter.MAGIC)
+                if (in.readByte() != b)
+                    throw new IOException("Not a binary tree");
+            int version = in.readByte();
+            if (version != BinaryFormatter.VERSION)
+                throw new IOException("Unsupported binary tree version: " + version);
+
+            TreeContext context = new TreeContext();
+            Map<Integer, String> typeLabels = new HashMap<>();
+            for (int i = in.readVarInt(); i > 0; i--)
+                typeLabels.put(in.readSignedVarInt(), in.readString());
+            String[] labels = new String[in.readVarInt()];
+            for (int i = 0; i < labels.length; i++)
+                labels[i] = in.readString();
+            for (int i = in.readVarInt(); i > 0; i--)
+                load(context, null, in.readString(), in.readString());
+
+            // The nodes waiting for children, with the number of children they still expect.
+            ITree[] parents = new ITree[32];
+            int[] remaining = new int[32];
+            int depth = 0;
+            ITree root = null;
+            do {
+                int type = in.readSignedVarInt();
+                int label = in.readVarInt();
+                if (label >= labels.length)
+                    throw new IOException("Invalid label index: " + label);
+                ITree t = context.createTree(type, labels[label], typeLabels.get(type));
+                t.setPos(in.readSignedVarInt());
+                t.setLength(in.readSignedVarInt());
+                int children = in.readVarInt();
+                for (int i = in.readVarInt(); i > 0; i--)
+                    load(context, t, in.readString(), in.readString());
+
+                if (root == null)
+                    root = t;
+                else {
+                    parents[depth - 1].addChild(t);
+                    remaining[depth - 1]--;
+                }
+                if (children > 0) {
+                    if (depth == parents.length) {
+                        parents = Arrays.copyOf(parents, depth * 2);
+                        remaining = Arrays.copyOf(remaining, depth * 2);
+                    }
+                    parents[depth] = t;
+                    remaining[depth++] = children;
+                }
+                while (depth > 0 && remaining[depth - 1] == 0)
+                    depth--;
+            } while (depth > 0);
+
+            context.setRoot(root);
+            if (TreeGenerator.COMPACT_TREES)
+                context.compact();
+            else
+                context.validate();
+            return context;
+        }
+
+        private void load(TreeContext context, ITree tree, String key, String value) throws IOException {
+            try {
+                if (tree == null)
+                    unserializers.load(context, key, value);
+                else
+                    unserializers.load(tree, key, value);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Cannot load metadata " + key, e);
+            }
+        }
+
+        public MetadataUnserializers getUnserializers() {
+            return unserializers;
+        }
+    }
 }
@@ -33,6 +33,7 @@ public class CompositeMatcher extends Matcher {
 
     public void match() {
         for (Matcher matcher : matchers) {
+            checkInterrupted();
             matcher.match();
         }
     }
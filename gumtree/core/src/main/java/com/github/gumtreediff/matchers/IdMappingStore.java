@@ -0,0 +1,219 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2011-2015 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ * Copyright 2011-2015 Floréal Morandat <florealm@gmail.com>
+ */
+
+package com.github.gumtreediff.matchers;
+
+import com.github.gumtreediff.tree.ITree;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * MappingStore of two numbered trees, keeping the mappings in two int arrays indexed by the node
+ * ids as assigned by {@link com.github.gumtreediff.tree.TreeUtils#postOrderNumbering(ITree)}. Only
+ * nodes of these two trees can be linked. A copy shares the arrays of its original until one of
+ * them is modified.
+ */
+public class IdMappingStore extends MappingStore {
+
+    private static final int NO_MAPPING = -1;
+
+    private final ITree[] srcTrees;
+
+    private final ITree[] dstTrees;
+
+    private int[] srcToDst;
+
+    private int[] dstToSrc;
+
+    private int size;
+
+    private boolean shared;
+
+    public IdMappingStore(ITree src, ITree dst) {
+        this.srcTrees = index(src);
+        this.dstTrees = index(dst);
+        this.srcToDst = new int[srcTrees.length];
+        this.dstToSrc = new int[dstTrees.length];
+        Arrays.fill(srcToDst, NO_MAPPING);
+        Arrays.fill(dstToSrc, NO_MAPPING);
+    }
+
+    private IdMappingStore(IdMappingStore other) {
+        this.srcTrees = other.srcTrees;
+        this.dstTrees = other.dstTrees;
+        this.srcToDst = other.srcToDst;
+        this.dstToSrc = other.dstToSrc;
+        this.size = other.size;
+        this.shared = true;
+        other.shared = true;
+    }
+
+    private static ITree[] index(ITree root) {
+        int maxId = -1;
+        for (ITree t: root.postOrder())
+            maxId = Math.max(maxId, t.getId());
+        ITree[] trees = new ITree[maxId + 1];
+        for (ITree t: root.postOrder()) {
+            if (t.getId() < 0 || trees[t.getId()] != null)
+                throw new IllegalArgumentException("The nodes of the tree are not numbered: " + root.toShortString());
+            trees[t.getId()] = t;
+        }
+        return trees;
+    }
+
+    private static int id(ITree[] trees, ITree t) {
+        int id = t.getId();
+        return (id >= 0 && id < trees.length && trees[id] == t) ? id : NO_MAPPING;
+    }
+
+    private static int checkedId(ITree[] trees, ITree t) {
+        int id = id(trees, t);
+        if (id == NO_MAPPING)
+            throw new IllegalArgumentException("Not a node of the mapped trees: " + t.toShortString());
+        return id;
+    }
+
+    private void ensureOwned() {
+        if (shared) {
+            srcToDst = srcToDst.clone();
+            dstToSrc = dstToSrc.clone();
+            shared = false;
+        }
+    }
+
+    @Override
+    public Set<Mapping> asSet() {
+        return new AbstractSet<Mapping>() {
+
+            @Override
+            public Iterator<Mapping> iterator() {
+                return new Iterator<Mapping>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        while (from < srcToDst.length && srcToDst[from] == NO_MAPPING)
+                            from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < srcToDst.length;
+                    }
+
+                    @Override
+                    public Mapping next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        Mapping m = new Mapping(srcTrees[next], dstTrees[srcToDst[next]]);
+                        next = advance(next + 1);
+                        return m;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public void forEachMapping(BiConsumer<ITree, ITree> consumer) {
+        int[] mappings = srcToDst;
+        for (int i = 0; i < mappings.length; i++)
+            if (mappings[i] != NO_MAPPING)
+                consumer.accept(srcTrees[i], dstTrees[mappings[i]]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public IdMappingStore copy() {
+        return new IdMappingStore(this);
+    }
+
+    @Override
+    public void link(ITree src, ITree dst) {
+        int s = checkedId(srcTrees, src);
+        int d = checkedId(dstTrees, dst);
+        ensureOwned();
+        if (srcToDst[s] == NO_MAPPING)
+            size++;
+        srcToDst[s] = d;
+        dstToSrc[d] = s;
+    }
+
+    @Override
+    public void unlink(ITree src, ITree dst) {
+        int s = id(srcTrees, src);
+        int d = id(dstTrees, dst);
+        ensureOwned();
+        if (s != NO_MAPPING && srcToDst[s] != NO_MAPPING) {
+            srcToDst[s] = NO_MAPPING;
+            size--;
+        }
+        if (d != NO_MAPPING)
+            dstToSrc[d] = NO_MAPPING;
+    }
+
+    @Override
+    public ITree getDst(ITree src) {
+        int s = id(srcTrees, src);
+        return (s == NO_MAPPING || srcToDst[s] == NO_MAPPING) ? null : dstTrees[srcToDst[s]];
+    }
+
+    @Override
+    public ITree getSrc(ITree dst) {
+        int d = id(dstTrees, dst);
+        return (d == NO_MAPPING || dstToSrc[d] == NO_MAPPING) ? null : srcTrees[dstToSrc[d]];
+    }
+
+    @Override
+    public boolean hasSrc(ITree src) {
+        int s = id(srcTrees, src);
+        return s != NO_MAPPING && srcToDst[s] != NO_MAPPING;
+    }
+
+    @Override
+    public boolean hasDst(ITree dst) {
+        int d = id(dstTrees, dst);
+        return d != NO_MAPPING && dstToSrc[d] != NO_MAPPING;
+    }
+
+    @Override
+    public boolean has(ITree src, ITree dst) {
+        return getDst(src) == dst;
+    }
+
+    @Override
+    public boolean isMatchable(ITree src, ITree dst) {
+        return src.hasSameType(dst) && !(hasSrc(src) || hasDst(dst));
+    }
+}
@@ -21,6 +21,7 @@
 package com.github.gumtreediff.matchers;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 
 import com.github.gumtreediff.tree.ITree;
 
@@ -67,6 +68,19 @@ public class MappingStore implements Iterable<Mapping> {
         };
     }
 
+    /**
+     * Calls the consumer with the source and destination of every mapping, without allocating
+     * Mapping instances.
+     */
+    public void forEachMapping(BiConsumer<ITree, ITree> consumer) {
+        for (Map.Entry<ITree, ITree> e: srcs.entrySet())
+            consumer.accept(e.getKey(), e.getValue());
+    }
+
+    public int size() {
+        return srcs.size();
+    }
+
     public MappingStore copy() {
         return new MappingStore(asSet());
     }
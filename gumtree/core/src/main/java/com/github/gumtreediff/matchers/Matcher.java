@@ -21,10 +21,12 @@
 package com.github.gumtreediff.matchers;
 
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeUtils;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.logging.Logger;
 
 public abstract class Matcher {
@@ -37,6 +39,8 @@ public abstract class Matcher {
 
     protected final MappingStore mappings;
 
+    private Boolean postOrderNumbered;
+
     public Matcher(ITree src, ITree dst, MappingStore mappings) {
         this.src = src;
         this.dst = dst;
@@ -76,22 +80,32 @@ public abstract class Matcher {
     }
 
     public double chawatheSimilarity(ITree src, ITree dst) {
-        int max = Math.max(src.getDescendants().size(), dst.getDescendants().size());
+        int max = Math.max(numberOfDescendants(src), numberOfDescendants(dst));
         return (double) numberOfCommonDescendants(src, dst) / (double) max;
     }
 
     public double diceSimilarity(ITree src, ITree dst) {
         double c = (double) numberOfCommonDescendants(src, dst);
-        return (2D * c) / ((double) src.getDescendants().size() + (double) dst.getDescendants().size());
+        return (2D * c) / ((double) numberOfDescendants(src) + (double) numberOfDescendants(dst));
     }
 
     public double jaccardSimilarity(ITree src, ITree dst) {
         double num = (double) numberOfCommonDescendants(src, dst);
-        double den = (double) src.getDescendants().size() + (double) dst.getDescendants().size() - num;
+        double den = (double) numberOfDescendants(src) + (double) numberOfDescendants(dst) - num;
         return num / den;
     }
 
+    protected int numberOfDescendants(ITree t) {
+        return isPostOrderNumbered() ? t.getSize() - 1 : t.getDescendants().size();
+    }
+
     protected int numberOfCommonDescendants(ITree src, ITree dst) {
+        if (isPostOrderNumbered()) {
+            // The descendants of dst are the nodes numbered from dst.getId() - dst.getSize() + 1
+            // to dst.getId() - 1.
+            return numberOfMappedDescendants(src, dst.getId() - dst.getSize() + 1, dst.getId());
+        }
+
         Set<ITree> dstDescandants = new HashSet<>(dst.getDescendants());
         int common = 0;
 
@@ -104,6 +118,46 @@ public abstract class Matcher {
         return common;
     }
 
+    private int numberOfMappedDescendants(ITree t, int minId, int maxId) {
+        int[] common = {0};
+        TreeUtils.preOrder(t, c -> {
+            ITree m = c == t ? null : mappings.getDst(c);
+            if (m != null && m.getId() >= minId && m.getId() < maxId)
+                common[0]++;
+        });
+        return common[0];
+    }
+
+    /**
+     * Whether both trees are numbered in post-order with up to date sizes, so that the descendants
+     * of a node are the nodes of an id interval. Checked on first use.
+     */
+    protected boolean isPostOrderNumbered() {
+        if (postOrderNumbered == null)
+            postOrderNumbered = isPostOrderNumbered(src) && isPostOrderNumbered(dst);
+        return postOrderNumbered;
+    }
+
+    private static boolean isPostOrderNumbered(ITree root) {
+        int id = 0;
+        for (ITree t : root.postOrder()) {
+            int size = 1;
+            for (ITree c : t.getChildren())
+                size += c.getSize();
+            if (t.getId() != id++ || t.getSize() != size)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops the matching if the thread has been interrupted, e.g. by a timeout of its diff.
+     */
+    public static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("Matching interrupted");
+    }
+
     public boolean isMappingAllowed(ITree src, ITree dst) {
         return src.hasSameType(dst) && !(mappings.hasSrc(src) || mappings.hasDst(dst));
     }
@@ -28,6 +28,12 @@ public class Matchers extends Registry<String, Matcher, Register> {
     private static Matchers registry;
     private Factory<? extends Matcher> defaultMatcherFactory; // FIXME shouln't be removed and use priority instead ?
 
+    /**
+     * Whether the matchers are given an IdMappingStore, which requires numbered trees, instead of
+     * a MappingStore.
+     */
+    public static boolean ID_MAPPINGS = Boolean.parseBoolean(System.getProperty("gt.ms.ids", "false"));
+
     public static Matchers getInstance() {
         if (registry == null)
             registry = new Matchers();
@@ -50,11 +56,15 @@ public class Matchers extends Registry<String, Matcher, Register> {
     }
 
     public Matcher getMatcher(String id, ITree src, ITree dst) {
-        return get(id, src, dst, new MappingStore());
+        return get(id, src, dst, newMappingStore(src, dst));
     }
 
     public Matcher getMatcher(ITree src, ITree dst) {
-        return defaultMatcherFactory.instantiate(new Object[]{src, dst, new MappingStore()});
+        return defaultMatcherFactory.instantiate(new Object[]{src, dst, newMappingStore(src, dst)});
+    }
+
+    public static MappingStore newMappingStore(ITree src, ITree dst) {
+        return ID_MAPPINGS ? new IdMappingStore(src, dst) : new MappingStore();
     }
 
     protected String getName(Register annotation, Class<? extends Matcher> clazz) {
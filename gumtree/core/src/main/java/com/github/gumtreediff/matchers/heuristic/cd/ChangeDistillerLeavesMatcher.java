@@ -20,49 +20,76 @@
 
 package com.github.gumtreediff.matchers.heuristic.cd;
 
-import com.github.gumtreediff.matchers.Mapping;
 import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.tree.ITree;
 import com.github.gumtreediff.tree.TreeUtils;
-import org.simmetrics.StringMetrics;
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
 
 import java.util.*;
 
+/**
+ * Matches the leaves whose labels have a similarity over {@link #LABEL_SIM_THRESHOLD}, the similarity being the one
+ * of {@link org.simmetrics.StringMetrics#qGramsDistance()}. Each distinct label is turned once into a bag of q-gram
+ * ids, and the destination labels sharing q-grams with a source label are found through an inverted index, among
+ * the labels of a size able to reach the threshold.
+ */
 public class ChangeDistillerLeavesMatcher extends Matcher {
 
     public static final double LABEL_SIM_THRESHOLD = 0.5D;
 
+    private static final int Q = 3;
+
+    private static final String PADDING = "##";
+
+    private final TObjectIntMap<String> qGramIds = new TObjectIntHashMap<>(
+            Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+
     public ChangeDistillerLeavesMatcher(ITree src, ITree dst, MappingStore store) {
         super(src, dst, store);
     }
 
     @Override
     public void match() {
+        List<ITree> srcLeaves = retainLeaves(TreeUtils.postOrder(src));
         List<ITree> dstLeaves = retainLeaves(TreeUtils.postOrder(dst));
 
-        List<Mapping> leafMappings = new LinkedList<>();
+        Map<String, TIntArrayList> dstLeavesByLabel = new LinkedHashMap<>();
+        for (int j = 0; j < dstLeaves.size(); j++)
+            dstLeavesByLabel.computeIfAbsent(dstLeaves.get(j).getLabel(), l -> new TIntArrayList()).add(j);
+        LabelIndex index = new LabelIndex(dstLeavesByLabel.keySet());
 
-        for (Iterator<ITree> srcLeaves = TreeUtils.leafIterator(
-                TreeUtils.postOrderIterator(src)); srcLeaves.hasNext();) {
-            for (ITree dstLeaf: dstLeaves) {
-                ITree srcLeaf = srcLeaves.next();
-                if (isMappingAllowed(srcLeaf, dstLeaf)) {
-                    double sim = StringMetrics.qGramsDistance().compare(srcLeaf.getLabel(), dstLeaf.getLabel());
-                    if (sim > LABEL_SIM_THRESHOLD) leafMappings.add(new Mapping(srcLeaf, dstLeaf));
+        List<LeafPair> leafPairs = new ArrayList<>();
+        Map<String, Candidates> candidatesByLabel = new HashMap<>();
+        for (int i = 0; i < srcLeaves.size(); i++) {
+            checkInterrupted();
+            ITree srcLeaf = srcLeaves.get(i);
+            Candidates candidates = candidatesByLabel.computeIfAbsent(srcLeaf.getLabel(), index::similarLabels);
+            for (int c = 0; c < candidates.labels.size(); c++) {
+                TIntArrayList js = dstLeavesByLabel.get(index.labels.get(candidates.labels.get(c)));
+                for (int k = 0; k < js.size(); k++) {
+                    int j = js.get(k);
+                    if (isMappingAllowed(srcLeaf, dstLeaves.get(j)))
+                        leafPairs.add(new LeafPair(i, j, candidates.sims.get(c)));
                 }
             }
         }
 
-        Set<ITree> srcIgnored = new HashSet<>();
-        Set<ITree> dstIgnored = new HashSet<>();
-        Collections.sort(leafMappings, new LeafMappingComparator());
-        while (leafMappings.size() > 0) {
-            Mapping best = leafMappings.remove(0);
-            if (!(srcIgnored.contains(best.getFirst()) || dstIgnored.contains(best.getSecond()))) {
-                addMapping(best.getFirst(),best.getSecond());
-                srcIgnored.add(best.getFirst());
-                dstIgnored.add(best.getSecond());
+        // The pairs in the order of a stable sort by similarity of the cross product of the leaves.
+        Collections.sort(leafPairs);
+        boolean[] srcIgnored = new boolean[srcLeaves.size()];
+        boolean[] dstIgnored = new boolean[dstLeaves.size()];
+        for (LeafPair best : leafPairs) {
+            if (!(srcIgnored[best.src] || dstIgnored[best.dst])) {
+                addMapping(srcLeaves.get(best.src), dstLeaves.get(best.dst));
+                srcIgnored[best.src] = true;
+                dstIgnored[best.dst] = true;
             }
         }
     }
@@ -76,17 +103,203 @@ public class ChangeDistillerLeavesMatcher extends Matcher {
         return trees;
     }
 
-    private class LeafMappingComparator implements Comparator<Mapping> {
+    /**
+     * The q-grams of a label as pairs of q-gram id and number of occurrences, sorted by id, in the way of the
+     * QGramExtended tokenizer of simmetrics.
+     */
+    private int[] qGrams(String label) {
+        if (label.isEmpty())
+            return new int[0];
+        String padded = PADDING + label + PADDING;
+        int[] ids = new int[padded.length() - Q + 1];
+        for (int i = 0; i < ids.length; i++) {
+            String qGram = padded.substring(i, i + Q);
+            int id = qGramIds.get(qGram);
+            if (id == -1) {
+                id = qGramIds.size();
+                qGramIds.put(qGram, id);
+            }
+            ids[i] = id;
+        }
+        Arrays.sort(ids);
+        TIntArrayList bag = new TIntArrayList();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0 && ids[i] == ids[i - 1]) {
+                bag.set(bag.size() - 1, bag.get(bag.size() - 1) + 1);
+            } else {
+                bag.add(ids[i]);
+                bag.add(1);
+            }
+        }
+        return bag.toArray();
+    }
+
+    private static int size(int[] bag) {
+        int size = 0;
+        for (int i = 1; i < bag.length; i += 2)
+            size += bag[i];
+        return size;
+    }
 
-        @Override
-        public int compare(Mapping m1, Mapping m2) {
-            return Double.compare(sim(m1), sim(m2));
+    /**
+     * The block distance similarity of two bags of q-grams, computed in float as simmetrics does.
+     */
+    static float similarity(int common, int size1, int size2) {
+        if (size1 == 0 && size2 == 0)
+            return 1.0f;
+        if (size1 == 0 || size2 == 0)
+            return 0.0f;
+        float total = size1 + size2;
+        float distance = size1 + size2 - 2 * common;
+        return (total - distance) / total;
+    }
+
+    /**
+     * Inverted index from the q-grams to the labels containing them, the labels being numbered by increasing size.
+     */
+    private class LabelIndex {
+
+        private final List<String> labels;
+
+        private final int[] sizes;
+
+        /**
+         * For each q-gram, the labels containing it with the number of occurrences, by increasing label number.
+         */
+        private final TIntObjectMap<TIntArrayList> postings = new TIntObjectHashMap<>();
+
+        private final int[] common;
+
+        LabelIndex(Collection<String> labels) {
+            List<int[]> bags = new ArrayList<>();
+            for (String label : labels)
+                bags.add(qGrams(label));
+            Integer[] order = new Integer[bags.size()];
+            for (int l = 0; l < order.length; l++)
+                order[l] = l;
+            List<String> byLabel = new ArrayList<>(labels);
+            Arrays.sort(order, Comparator.comparingInt(l -> size(bags.get(l))));
+
+            this.labels = new ArrayList<>(order.length);
+            this.sizes = new int[order.length];
+            for (int l = 0; l < order.length; l++) {
+                int[] bag = bags.get(order[l]);
+                this.labels.add(byLabel.get(order[l]));
+                this.sizes[l] = size(bag);
+                for (int g = 0; g < bag.length; g += 2) {
+                    TIntArrayList posting = postings.get(bag[g]);
+                    if (posting == null) {
+                        posting = new TIntArrayList();
+                        postings.put(bag[g], posting);
+                    }
+                    posting.add(new int[] {l, bag[g + 1]});
+                }
+            }
+            this.common = new int[order.length];
         }
 
-        public double sim(Mapping m) {
+        /**
+         * The first label of at least the given size.
+         */
+        private int firstOfSize(int size) {
+            int lo = 0;
+            int hi = sizes.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sizes[mid] < size) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
 
-            return StringMetrics.qGramsDistance().compare(m.getFirst().getLabel(), m.getSecond().getLabel());
+        /**
+         * The first entry of a posting for a label of at least the given number.
+         */
+        private int firstOfLabel(TIntArrayList posting, int label) {
+            int lo = 0;
+            int hi = posting.size() / 2;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (posting.get(2 * mid) < label) lo = mid + 1;
+                else hi = mid;
+            }
+            return 2 * lo;
+        }
+
+        Candidates similarLabels(String label) {
+            Candidates candidates = new Candidates();
+            int[] bag = qGrams(label);
+            int size = size(bag);
+            if (size == 0) {
+                for (int l = 0; l < sizes.length && sizes[l] == 0; l++)
+                    candidates.add(l, similarity(0, 0, 0));
+                return candidates;
+            }
+
+            // At most min(size, other) q-grams are in common, so the similarity is over 1/2 only if the other size
+            // is over size / 3 and under size * 3.
+            int first = firstOfSize(size / 3 + 1);
+            int last = firstOfSize(size * 3);
+            TIntArrayList touched = new TIntArrayList();
+            for (int g = 0; g < bag.length; g += 2) {
+                TIntArrayList posting = postings.get(bag[g]);
+                if (posting == null)
+                    continue;
+                for (int p = firstOfLabel(posting, first); p < posting.size(); p += 2) {
+                    int l = posting.get(p);
+                    if (l >= last)
+                        break;
+                    if (common[l] == 0)
+                        touched.add(l);
+                    common[l] += Math.min(bag[g + 1], posting.get(p + 1));
+                }
+            }
+            touched.sort();
+            for (int t = 0; t < touched.size(); t++) {
+                int l = touched.get(t);
+                float sim = similarity(common[l], size, sizes[l]);
+                if (sim > LABEL_SIM_THRESHOLD)
+                    candidates.add(l, sim);
+                common[l] = 0;
+            }
+            return candidates;
         }
+    }
+
+    private static class Candidates {
+
+        final TIntArrayList labels = new TIntArrayList();
+
+        final TFloatArrayList sims = new TFloatArrayList();
 
+        void add(int label, float sim) {
+            labels.add(label);
+            sims.add(sim);
+        }
+    }
+
+    private static class LeafPair implements Comparable<LeafPair> {
+
+        final int src;
+
+        final int dst;
+
+        final float sim;
+
+        LeafPair(int src, int dst, float sim) {
+            this.src = src;
+            this.dst = dst;
+            this.sim = sim;
+        }
+
+        @Override
+        public int compareTo(LeafPair p) {
+            int c = Float.compare(sim, p.sim);
+            if (c == 0)
+                c = Integer.compare(src, p.src);
+            if (c == 0)
+                c = Integer.compare(dst, p.dst);
+            return c;
+        }
     }
 }
@@ -25,11 +25,16 @@ import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.matchers.optimal.zs.ZsMatcher;
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.PrunedTree;
 import com.github.gumtreediff.tree.TreeMap;
+import com.github.gumtreediff.tree.TreeUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class AbstractBottomUpMatcher extends Matcher {
@@ -37,6 +42,12 @@ public abstract class AbstractBottomUpMatcher extends Matcher {
             Integer.parseInt(System.getProperty("gt.bum.szt", "1000"));
     public static final double SIM_THRESHOLD =
             Double.parseDouble(System.getProperty("gt.bum.smt", "0.5"));
+    /**
+     * Maximum product of the sizes of the unmatched subtrees given to the ZS algorithm, whose time
+     * and memory grow with it. Above it, lastChanceMatch pairs the nodes with the same labels.
+     */
+    public static long ZS_BUDGET =
+            Long.parseLong(System.getProperty("gt.bum.zsb", "10000000"));
 
     protected TreeMap srcIds;
     protected TreeMap dstIds;
@@ -51,18 +62,18 @@ public abstract class AbstractBottomUpMatcher extends Matcher {
 
         mappedSrc = new TreeMap();
         mappedDst = new TreeMap();
-        for (Mapping m : store.asSet()) {
-            mappedSrc.putTrees(m.getFirst());
-            mappedDst.putTrees(m.getSecond());
-        }
+        store.forEachMapping((s, d) -> {
+            mappedSrc.putTrees(s);
+            mappedDst.putTrees(d);
+        });
     }
 
     protected List<ITree> getDstCandidates(ITree src) {
         List<ITree> seeds = new ArrayList<>();
-        for (ITree c: src.getDescendants()) {
-            ITree m = mappings.getDst(c);
+        TreeUtils.preOrder(src, c -> {
+            ITree m = c == src ? null : mappings.getDst(c);
             if (m != null) seeds.add(m);
-        }
+        });
         List<ITree> candidates = new ArrayList<>();
         Set<ITree> visited = new HashSet<>();
         for (ITree seed: seeds) {
@@ -82,18 +93,22 @@ public abstract class AbstractBottomUpMatcher extends Matcher {
 
     //FIXME checks if it is better or not to remove the already found mappings.
     protected void lastChanceMatch(ITree src, ITree dst) {
-        ITree cSrc = src.deepCopy();
-        ITree cDst = dst.deepCopy();
-        removeMatched(cSrc, true);
-        removeMatched(cDst, false);
-
-        if (cSrc.getSize() < AbstractBottomUpMatcher.SIZE_THRESHOLD
-                || cDst.getSize() < AbstractBottomUpMatcher.SIZE_THRESHOLD) {
-            Matcher m = new ZsMatcher(cSrc, cDst, new MappingStore());
-            m.match();
-            for (Mapping candidate: m.getMappings()) {
-                ITree left = srcIds.getTree(candidate.getFirst().getId());
-                ITree right = dstIds.getTree(candidate.getSecond().getId());
+        PrunedTree cSrc = new PrunedTree(src, t -> isSrcMatched(t));
+        PrunedTree cDst = new PrunedTree(dst, t -> isDstMatched(t));
+
+        if (cSrc.size() < AbstractBottomUpMatcher.SIZE_THRESHOLD
+                || cDst.size() < AbstractBottomUpMatcher.SIZE_THRESHOLD) {
+            Iterable<Mapping> candidates;
+            if ((long) cSrc.size() * (long) cDst.size() > AbstractBottomUpMatcher.ZS_BUDGET)
+                candidates = sameLabelMappings(cSrc, cDst);
+            else {
+                Matcher m = new ZsMatcher(cSrc, cDst, new MappingStore());
+                m.match();
+                candidates = m.getMappings();
+            }
+            for (Mapping candidate: candidates) {
+                ITree left = candidate.getFirst();
+                ITree right = candidate.getSecond();
 
                 if (left.getId() == src.getId() || right.getId() == dst.getId()) {
 //                    System.err.printf("Trying to map already mapped source node (%d == %d || %d == %d)\n",
@@ -116,6 +131,29 @@ public abstract class AbstractBottomUpMatcher extends Matcher {
         mappedDst.putTrees(dst);
     }
 
+    /**
+     * Linear time replacement of the ZS matching for the views whose sizes product exceeds
+     * ZS_BUDGET: the nodes are paired in post-order with the first unpaired node having the same
+     * type and label.
+     */
+    private static List<Mapping> sameLabelMappings(PrunedTree src, PrunedTree dst) {
+        Map<String, LinkedList<ITree>> dstNodes = new HashMap<>();
+        for (int i = 0; i < dst.size(); i++) {
+            ITree t = dst.get(i);
+            dstNodes.computeIfAbsent(t.getType() + ITree.SEPARATE_SYMBOL + t.getLabel(),
+                k -> new LinkedList<>()).add(t);
+        }
+
+        List<Mapping> mappings = new ArrayList<>();
+        for (int i = 0; i < src.size(); i++) {
+            ITree t = src.get(i);
+            LinkedList<ITree> candidates = dstNodes.get(t.getType() + ITree.SEPARATE_SYMBOL + t.getLabel());
+            if (candidates != null && !candidates.isEmpty())
+                mappings.add(new Mapping(t, candidates.removeFirst()));
+        }
+        return mappings;
+    }
+
     /**
      * Remove mapped nodes from the tree. Be careful this method will invalidate
      * all the metrics of this tree and its descendants. If you need them, you need
@@ -24,15 +24,35 @@ import com.github.gumtreediff.matchers.*;
 import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.MultiMappingStore;
 import com.github.gumtreediff.tree.ITree;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public abstract class AbstractSubtreeMatcher extends Matcher {
 
     public static int MIN_HEIGHT = Integer.parseInt(System.getProperty("gt.stm.mh", "2"));
 
+    /**
+     * Number of threads solving the groups of ambiguous mappings, 1 to solve them on the matching thread.
+     */
+    public static int PARALLELISM = Integer.parseInt(System.getProperty("gt.stm.par", "1"));
+
+    private static ForkJoinPool pool;
+
     public AbstractSubtreeMatcher(ITree src, ITree dst, MappingStore store) {
         super(src, dst, store);
     }
@@ -51,6 +71,7 @@ public abstract class AbstractSubtreeMatcher extends Matcher {
         PriorityTreeList dstTrees = new PriorityTreeList(dst);
 
         while (srcTrees.peekHeight() != -1 && dstTrees.peekHeight() != -1) {
+            checkInterrupted();
             while (srcTrees.peekHeight() != dstTrees.peekHeight())
                 popLarger(srcTrees, dstTrees);
 
@@ -60,9 +81,26 @@ public abstract class AbstractSubtreeMatcher extends Matcher {
             boolean[] marksForSrcTrees = new boolean[currentHeightSrcTrees.size()];
             boolean[] marksForDstTrees = new boolean[currentHeightDstTrees.size()];
 
+            // Isomorphic trees share their hash, so each source tree is only compared with the
+            // destination trees of its bucket, in the same order as a full scan would.
+            TIntObjectHashMap<TIntArrayList> dstBuckets = new TIntObjectHashMap<>();
+            for (int j = 0; j < currentHeightDstTrees.size(); j++) {
+                int hash = currentHeightDstTrees.get(j).getHash();
+                TIntArrayList bucket = dstBuckets.get(hash);
+                if (bucket == null) {
+                    bucket = new TIntArrayList(1);
+                    dstBuckets.put(hash, bucket);
+                }
+                bucket.add(j);
+            }
+
             for (int i = 0; i < currentHeightSrcTrees.size(); i++) {
-                for (int j = 0; j < currentHeightDstTrees.size(); j++) {
-                    ITree src = currentHeightSrcTrees.get(i);
+                ITree src = currentHeightSrcTrees.get(i);
+                TIntArrayList bucket = dstBuckets.get(src.getHash());
+                if (bucket == null)
+                    continue;
+                for (int k = 0; k < bucket.size(); k++) {
+                    int j = bucket.get(k);
                     ITree dst = currentHeightDstTrees.get(j);
 
                     if (src.isIsomorphicTo(dst)) {
@@ -105,14 +143,154 @@ public abstract class AbstractSubtreeMatcher extends Matcher {
     }
 
     protected void retainBestMapping(List<Mapping> mappings, Set<ITree> srcIgnored, Set<ITree> dstIgnored) {
-        while (mappings.size() > 0) {
-            Mapping mapping = mappings.remove(0);
+        addMappingsRecursively(bestMappings(mappings, srcIgnored, dstIgnored));
+    }
+
+    /**
+     * The mappings of the list, in order, whose nodes are not ignored nor in an earlier mapping of the list.
+     */
+    protected static List<Mapping> bestMappings(List<Mapping> mappings, Set<ITree> srcIgnored, Set<ITree> dstIgnored) {
+        List<Mapping> best = new ArrayList<>();
+        for (Mapping mapping : mappings) {
             if (!(srcIgnored.contains(mapping.getFirst()) || dstIgnored.contains(mapping.getSecond()))) {
-                addMappingRecursively(mapping.getFirst(), mapping.getSecond());
+                best.add(mapping);
                 srcIgnored.add(mapping.getFirst());
                 dstIgnored.add(mapping.getSecond());
             }
         }
+        return best;
+    }
+
+    private void addMappingsRecursively(List<Mapping> mappings) {
+        for (Mapping mapping : mappings)
+            addMappingRecursively(mapping.getFirst(), mapping.getSecond());
+    }
+
+    /**
+     * Adds the mappings the solver picks for each group of ambiguous mappings, in the order of the groups.
+     *
+     * A solver reads the mappings of the descendants of the parents of the nodes of its group, so a group only
+     * depends on the earlier groups whose nodes are below these parents on both sides. When PARALLELISM is over 1,
+     * the groups are split into components of groups depending on each other. The first groups of all components
+     * are solved concurrently, their mappings are added in the order of the groups, then come the second groups,
+     * and so on. Each group sees the same mappings as in a sequential resolution, so the result is the same.
+     */
+    protected <G> void resolveAmbiguousGroups(List<G> groups, Function<G, Collection<ITree>> srcs,
+                                              Function<G, Collection<ITree>> dsts, Function<G, List<Mapping>> solver) {
+        if (PARALLELISM <= 1 || groups.size() <= 1) {
+            for (G group : groups) {
+                checkInterrupted();
+                addMappingsRecursively(solver.apply(group));
+            }
+            return;
+        }
+
+        List<TIntArrayList> waves = new ArrayList<>();
+        int[] components = components(groups, srcs, dsts);
+        int[] ranks = new int[groups.size()];
+        for (int g = 0; g < groups.size(); g++) {
+            int rank = ranks[components[g]]++;
+            if (rank == waves.size())
+                waves.add(new TIntArrayList());
+            waves.get(rank).add(g);
+        }
+
+        // The mappings are only read while the groups of a wave are solved.
+        isPostOrderNumbered();
+        for (TIntArrayList wave : waves) {
+            checkInterrupted();
+            List<Callable<List<Mapping>>> tasks = new ArrayList<>(wave.size());
+            for (int i = 0; i < wave.size(); i++) {
+                G group = groups.get(wave.get(i));
+                tasks.add(() -> solver.apply(group));
+            }
+            try {
+                for (Future<List<Mapping>> solution : pool().invokeAll(tasks))
+                    addMappingsRecursively(solution.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Matching interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Numbers the components of the groups so that a group and the earlier groups it depends on share a component,
+     * each component taking the number of its first group.
+     */
+    private static <G> int[] components(List<G> groups, Function<G, Collection<ITree>> srcs,
+                                        Function<G, Collection<ITree>> dsts) {
+        Map<ITree, TIntArrayList> srcBelow = groupsBelow(groups, srcs);
+        Map<ITree, TIntArrayList> dstBelow = groupsBelow(groups, dsts);
+        int[] parents = new int[groups.size()];
+        for (int g = 0; g < groups.size(); g++)
+            parents[g] = g;
+        for (int g = 0; g < groups.size(); g++) {
+            TIntSet srcDependencies = dependencies(srcs.apply(groups.get(g)), srcBelow);
+            TIntSet dstDependencies = dependencies(dsts.apply(groups.get(g)), dstBelow);
+            srcDependencies.retainAll(dstDependencies);
+            for (int other : srcDependencies.toArray())
+                union(parents, g, other);
+        }
+        int[] components = new int[groups.size()];
+        for (int g = 0; g < groups.size(); g++)
+            components[g] = find(parents, g);
+        return components;
+    }
+
+    /**
+     * For each node, the groups having this node or a node below it.
+     */
+    private static <G> Map<ITree, TIntArrayList> groupsBelow(List<G> groups, Function<G, Collection<ITree>> nodes) {
+        Map<ITree, TIntArrayList> below = new HashMap<>();
+        for (int g = 0; g < groups.size(); g++) {
+            for (ITree t : nodes.apply(groups.get(g))) {
+                for (ITree p = t; p != null; p = p.getParent()) {
+                    TIntArrayList gs = below.computeIfAbsent(p, k -> new TIntArrayList());
+                    if (!gs.isEmpty() && gs.get(gs.size() - 1) == g)
+                        break;
+                    gs.add(g);
+                }
+            }
+        }
+        return below;
+    }
+
+    private static TIntSet dependencies(Collection<ITree> nodes, Map<ITree, TIntArrayList> below) {
+        TIntSet dependencies = new TIntHashSet();
+        for (ITree t : nodes) {
+            TIntArrayList gs = t.getParent() == null ? null : below.get(t.getParent());
+            if (gs != null)
+                dependencies.addAll(gs);
+        }
+        return dependencies;
+    }
+
+    private static int find(int[] parents, int g) {
+        while (parents[g] != g) {
+            parents[g] = parents[parents[g]];
+            g = parents[g];
+        }
+        return g;
+    }
+
+    private static void union(int[] parents, int g1, int g2) {
+        int c1 = find(parents, g1);
+        int c2 = find(parents, g2);
+        if (c1 < c2)
+            parents[c2] = c1;
+        else if (c2 < c1)
+            parents[c1] = c2;
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null)
+            pool = new ForkJoinPool(PARALLELISM);
+        return pool;
     }
 
     private static class PriorityTreeList {
@@ -59,19 +59,19 @@ public class CliqueSubtreeMatcher extends AbstractSubtreeMatcher {
 
         Collections.sort(ccliques, new CliqueComparator());
 
-        for (Pair<List<ITree>, List<ITree>> clique : ccliques) {
-            List<Mapping> cliqueAsMappings = fromClique(clique);
-            Collections.sort(cliqueAsMappings, new MappingComparator(cliqueAsMappings));
-            Set<ITree> srcIgnored = new HashSet<>();
-            Set<ITree> dstIgnored = new HashSet<>();
-            retainBestMapping(cliqueAsMappings, srcIgnored, dstIgnored);
-        }
+        resolveAmbiguousGroups(ccliques, Pair::getFirst, Pair::getSecond, this::solve);
+    }
+
+    private List<Mapping> solve(Pair<List<ITree>, List<ITree>> clique) {
+        List<Mapping> cliqueAsMappings = fromClique(clique);
+        Collections.sort(cliqueAsMappings, new MappingComparator(cliqueAsMappings));
+        return bestMappings(cliqueAsMappings, new HashSet<>(), new HashSet<>());
     }
 
     private List<Mapping> fromClique(Pair<List<ITree>, List<ITree>> clique) {
         List<Mapping> cliqueAsMappings = new ArrayList<Mapping>();
         for (ITree src: clique.getFirst())
-            for (ITree dst: clique.getFirst())
+            for (ITree dst: clique.getSecond())
                 cliqueAsMappings.add(new Mapping(src, dst));
         return cliqueAsMappings;
     }
@@ -123,7 +123,7 @@ public class CliqueSubtreeMatcher extends AbstractSubtreeMatcher {
             double[] sims2 = simMap.get(m2);
             for (int i = 0; i < sims1.length; i++) {
                 if (sims1[i] != sims2[i])
-                    return -1 * Double.compare(sims2[i], sims2[i]);
+                    return -1 * Double.compare(sims1[i], sims2[i]);
             }
             return 0;
         }
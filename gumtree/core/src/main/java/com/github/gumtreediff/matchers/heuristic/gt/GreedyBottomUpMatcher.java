@@ -41,6 +41,7 @@ public class GreedyBottomUpMatcher extends AbstractBottomUpMatcher {
 
     public void match() {
         for (ITree t: src.postOrder())  {
+            checkInterrupted();
             if (t.isRoot()) {
                 addMapping(t, this.dst);
                 lastChanceMatch(t, this.dst);
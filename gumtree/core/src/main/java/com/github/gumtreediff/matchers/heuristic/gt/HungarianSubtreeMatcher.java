@@ -21,9 +21,11 @@
 package com.github.gumtreediff.matchers.heuristic.gt;
 
 import com.github.gumtreediff.utils.HungarianAlgorithm;
+import com.github.gumtreediff.matchers.Mapping;
 import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.MultiMappingStore;
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.utils.ScratchBuffers;
 
 import java.util.*;
 
@@ -52,22 +54,29 @@ public class HungarianSubtreeMatcher extends AbstractSubtreeMatcher {
 
         Collections.sort(ambiguousList, new MultiMappingComparator());
 
-        for (MultiMappingStore ambiguous: ambiguousList) {
-            System.out.println("hungarian try.");
-            List<ITree> lstSrcs = new ArrayList<>(ambiguous.getSrcs());
-            List<ITree> lstDsts = new ArrayList<>(ambiguous.getDsts());
-            double[][] matrix = new double[lstSrcs.size()][lstDsts.size()];
-            for (int i = 0; i < lstSrcs.size(); i++)
-                for (int j = 0; j < lstDsts.size(); j++)
-                    matrix[i][j] = cost(lstSrcs.get(i), lstDsts.get(j));
-
-            HungarianAlgorithm hgAlg = new HungarianAlgorithm(matrix);
-            int[] solutions = hgAlg.execute();
-            for (int i = 0; i < solutions.length; i++) {
-                int dstIdx = solutions[i];
-                if (dstIdx != -1) addMappingRecursively(lstSrcs.get(i), lstDsts.get(dstIdx));
-            }
+        resolveAmbiguousGroups(ambiguousList, MultiMappingStore::getSrcs, MultiMappingStore::getDsts, this::solve);
+    }
+
+    private List<Mapping> solve(MultiMappingStore ambiguous) {
+        List<ITree> lstSrcs = new ArrayList<>(ambiguous.getSrcs());
+        List<ITree> lstDsts = new ArrayList<>(ambiguous.getDsts());
+        int rows = lstSrcs.size();
+        int cols = lstDsts.size();
+        int dim = Math.max(rows, cols);
+        // room for the padded square matrix, so that the algorithm works in the buffer
+        double[] matrix = ScratchBuffers.doubles(0, dim * dim);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                matrix[i * cols + j] = cost(lstSrcs.get(i), lstDsts.get(j));
+
+        HungarianAlgorithm hgAlg = new HungarianAlgorithm(matrix, rows, cols);
+        int[] solutions = hgAlg.execute();
+        List<Mapping> solved = new ArrayList<>();
+        for (int i = 0; i < solutions.length; i++) {
+            int dstIdx = solutions[i];
+            if (dstIdx != -1) solved.add(new Mapping(lstSrcs.get(i), lstDsts.get(dstIdx)));
         }
+        return solved;
     }
 
     private double cost(ITree src, ITree dst) {
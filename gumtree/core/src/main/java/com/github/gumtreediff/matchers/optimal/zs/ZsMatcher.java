@@ -23,70 +23,176 @@ package com.github.gumtreediff.matchers.optimal.zs;
 import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.PrunedTree;
+import com.github.gumtreediff.utils.ScratchBuffers;
+import org.simmetrics.StringMetric;
 import org.simmetrics.StringMetrics;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Map;
 
+/**
+ * Zhang and Shasha tree edit distance matcher. The distances are kept in flat int arrays, at half
+ * the memory of doubles, in fixed point with a deletion or an insertion costing a scale of at most
+ * SCALE, lowered for large trees so that the distances fit in an int (2^18 for 2000 nodes). Unlike
+ * floats, ints add up exactly whatever the order, so equal distances stay equal, but the label
+ * similarities are rounded to 1/scale: distances that doubles tell apart by less than that are
+ * tied, and such a tie may be resolved differently. The mappings were found identical to the ones
+ * of double distances on about 3000 random pairs of trees of up to 400 nodes, and on 60 pairs of
+ * 1000 to 3000 nodes.
+ *
+ * The tree distances are indexed by the post-order numbers of the nodes, and the forest distances
+ * of a pair of keyroots by the positions of the nodes in the subtrees of the keyroots, so that the
+ * forest buffer only spans the pair computed. When a band k is given, only the pairs of nodes whose
+ * post-order numbers differ by at most k are computed, the others being considered as infinitely
+ * distant, which takes the memory from quadratic to linear in the size of the trees.
+ */
 public class ZsMatcher extends Matcher {
 
+    /**
+     * Default band, negative for none.
+     */
+    public static int BAND = Integer.parseInt(System.getProperty("gt.zs.band", "-1"));
+
+    private static final int OUT_OF_BAND = -1;
+
+    /**
+     * Cost of a deletion or an insertion, as precise as the similarities of the labels. It is lowered
+     * for large trees so that the distances fit in an int.
+     */
+    private static final int SCALE = 1 << 24;
+
+    /**
+     * Distance of the pairs out of the band, above any distance and whose sums do not overflow.
+     */
+    private static final int INFINITY = 1 << 30;
+
     private ZsTree src;
     private ZsTree dst;
 
-    private double[][] treeDist;
-    private double[][] forestDist;
+    private final int band;
 
-    private static ITree getFirstLeaf(ITree t) {
-        ITree current = t;
-        while (!current.isLeaf())
-            current = current.getChild(0);
+    private final int width;
 
-        return current;
-    }
+    private final int scale;
+
+    private int[] treeDist;
+    private int[] forestDist;
+
+    // Nodes preceding the keyroot subtrees whose forest distances are in forestDist, and row width
+    private int forestRow;
+    private int forestCol;
+    private int forestWidth;
+
+    private final StringMetric qGrams = StringMetrics.qGramsDistance();
 
     public ZsMatcher(ITree src, ITree dst, MappingStore store) {
-        super(src, dst, store);
+        this(new PrunedTree(src), new PrunedTree(dst), store);
+    }
+
+    /**
+     * Matches the nodes of two views of trees, which are not modified.
+     */
+    public ZsMatcher(PrunedTree src, PrunedTree dst, MappingStore store) {
+        this(src, dst, store, BAND);
+    }
+
+    /**
+     * @param band the maximum difference between the post-order numbers of the nodes compared,
+     *             raised to the difference of the tree sizes if needed, negative for no band
+     */
+    public ZsMatcher(PrunedTree src, PrunedTree dst, MappingStore store, int band) {
+        super(src.getRoot(), dst.getRoot(), store);
         this.src = new ZsTree(src);
         this.dst = new ZsTree(dst);
+        int sizeDiff = Math.abs(this.src.nodeCount - this.dst.nodeCount);
+        if (band < 0 || band >= Math.max(this.src.nodeCount, this.dst.nodeCount))
+            this.band = -1;
+        else
+            this.band = Math.max(band, sizeDiff);
+        this.width = (this.band < 0) ? this.dst.nodeCount + 1 : 2 * this.band + 1;
+        // the distances are at most (n + m) deletions and insertions, and sums add at most three more
+        int maxCosts = this.src.nodeCount + this.dst.nodeCount + 3;
+        this.scale = Math.min(SCALE, Math.max(1, Integer.highestOneBit((INFINITY / 2) / maxCosts)));
+    }
+
+    /**
+     * @return the position of the distances between the di-th source and dj-th destination
+     *     nodes in the arrays, or OUT_OF_BAND
+     */
+    private int cell(int di, int dj) {
+        if (band < 0)
+            return di * width + dj;
+        int offset = dj - di + band;
+        return (offset < 0 || offset >= width) ? OUT_OF_BAND : di * width + offset;
+    }
+
+    /**
+     * @return the position of the distance between the forests of the di first and dj first nodes
+     *     in the forest buffer, or OUT_OF_BAND
+     */
+    private int forestCell(int di, int dj) {
+        int row = (di - forestRow - 1) * forestWidth;
+        if (band < 0)
+            return row + dj - forestCol - 1;
+        int offset = dj - di + band;
+        return (offset < 0 || offset >= width) ? OUT_OF_BAND : row + offset;
     }
 
-    private double[][] computeTreeDist() {
+    /**
+     * Distance between the forests of the di first and dj first nodes, during the computation of
+     * the forest distances of the last pair of keyroots. As deletions and insertions cost 1, the
+     * distances to the empty forests are not stored.
+     */
+    private int forestDist(int di, int dj) {
+        if (di == forestRow)
+            return (dj - forestCol) * scale;
+        if (dj == forestCol)
+            return (di - forestRow) * scale;
+        int cell = forestCell(di, dj);
+        return (cell == OUT_OF_BAND) ? INFINITY : forestDist[cell];
+    }
 
-        treeDist = new double[src.nodeCount + 1][dst.nodeCount + 1];
-        forestDist = new double[src.nodeCount + 1][dst.nodeCount + 1];
+    private void computeTreeDist() {
+        // every cell is written before being read, so reused arrays need no clearing
+        treeDist = ScratchBuffers.ints(0, (src.nodeCount + 1) * width);
+        // the pair of roots has the largest forests
+        forestDist = ScratchBuffers.ints(1, src.nodeCount * (band < 0 ? dst.nodeCount : width));
 
         for (int i = 1; i < src.kr.length; i++) {
+            checkInterrupted();
             for (int j = 1; j < dst.kr.length; j++) {
-                forestDist(src.kr[i], dst.kr[j]);
+                computeForestDist(src.kr[i], dst.kr[j]);
 
             }
         }
-
-        return treeDist;
     }
 
-    private void forestDist(int i, int j) {
-        forestDist[src.lld(i) - 1][dst.lld(j) - 1] = 0;
-        for (int di = src.lld(i); di <= i; di++) {
-            double costDel =  getDeletionCost(src.tree(di));
-            forestDist[di][dst.lld(j) - 1] = forestDist[di - 1][dst.lld(j) - 1] + costDel;
-            for (int dj = dst.lld(j); dj <= j; dj++) {
-                double costIns = getInsertionCost(dst.tree(dj));
-                forestDist[src.lld(i) - 1][dj] = forestDist[src.lld(i) - 1][dj - 1] + costIns;
-
-                if ((src.lld(di) == src.lld(i) && (dst.lld(dj) == dst.lld(j)))) {
-                    double costUpd = getUpdateCost(src.tree(di), dst.tree(dj));
-                    forestDist[di][dj] = Math.min(Math.min(forestDist[di - 1][dj] + costDel,
-                                    forestDist[di][dj - 1] + costIns),
-                            forestDist[di - 1][dj - 1] + costUpd);
-                    treeDist[di][dj] = forestDist[di][dj];
+    private void computeForestDist(int i, int j) {
+        int li = src.lld(i) - 1;
+        int lj = dst.lld(j) - 1;
+        forestRow = li;
+        forestCol = lj;
+        forestWidth = (band < 0) ? j - lj : width;
+        for (int di = li + 1; di <= i; di++) {
+            int ldi = src.lld(di) - 1;
+            for (int dj = lj + 1; dj <= j; dj++) {
+                int cell = cell(di, dj);
+                if (cell == OUT_OF_BAND)
+                    continue;
+                int forestCell = forestCell(di, dj);
+                int ldj = dst.lld(dj) - 1;
+
+                if (ldi == li && ldj == lj) {
+                    int costUpd = getUpdateCost(src.tree(di), dst.tree(dj));
+                    forestDist[forestCell] = Math.min(Math.min(forestDist(di - 1, dj) + scale,
+                                    forestDist(di, dj - 1) + scale),
+                            forestDist(di - 1, dj - 1) + costUpd);
+                    treeDist[cell] = forestDist[forestCell];
                 } else {
-                    forestDist[di][dj] = Math.min(Math.min(forestDist[di - 1][dj] + costDel,
-                                    forestDist[di][dj - 1] + costIns),
-                            forestDist[src.lld(di) - 1][dst.lld(dj) - 1]
-                                    + treeDist[di][dj]);
+                    forestDist[forestCell] = Math.min(Math.min(forestDist(di - 1, dj) + scale,
+                                    forestDist(di, dj - 1) + scale),
+                            forestDist(ldi, ldj) + treeDist[cell]);
                 }
             }
         }
@@ -111,7 +217,7 @@ public class ZsMatcher extends Matcher {
 
             // compute forest distance matrix
             if (!rootNodePair)
-                forestDist(lastRow, lastCol);
+                computeForestDist(lastRow, lastCol);
 
             rootNodePair = false;
 
@@ -123,12 +229,13 @@ public class ZsMatcher extends Matcher {
             int col = lastCol;
 
             while ((row > firstRow) || (col > firstCol)) {
+                int current = forestDist(row, col);
                 if ((row > firstRow)
-                        && (forestDist[row - 1][col] + 1D == forestDist[row][col])) {
+                        && (forestDist(row - 1, col) + scale == current)) {
                     // node with postorderID row is deleted from ted1
                     row--;
                 } else if ((col > firstCol)
-                        && (forestDist[row][col - 1] + 1D == forestDist[row][col])) {
+                        && (forestDist(row, col - 1) + scale == current)) {
                     // node with postorderID col is inserted into ted2
                     col--;
                 } else {
@@ -156,24 +263,24 @@ public class ZsMatcher extends Matcher {
                 }
             }
         }
-    }
-
-    private double getDeletionCost(ITree n) {
-        return 1D;
-    }
 
-    private double getInsertionCost(ITree n) {
-        return 1D;
+        // the arrays go back to the thread
+        treeDist = null;
+        forestDist = null;
     }
 
-    private double getUpdateCost(ITree n1, ITree n2) {
+    /**
+     * @return the cost of updating a node into another, more than a deletion and an insertion for
+     *     nodes of different types, which are thus never mapped
+     */
+    private int getUpdateCost(ITree n1, ITree n2) {
         if (n1.getType() == n2.getType())
             if ("".equals(n1.getLabel()) || "".equals(n2.getLabel()))
-                return 1D;
+                return scale;
             else
-                return 1D - StringMetrics.qGramsDistance().compare(n1.getLabel(), n2.getLabel());
+                return (int) Math.round((1D - qGrams.compare(n1.getLabel(), n2.getLabel())) * scale);
         else
-            return Double.MAX_VALUE;
+            return 2 * scale + 1;
     }
 
     private final class ZsTree {
@@ -190,22 +297,16 @@ public class ZsMatcher extends Matcher {
 
         private int[] kr;
 
-        private ZsTree(ITree t) {
+        private ZsTree(PrunedTree t) {
             this.start = 0;
-            this.nodeCount = t.getSize();
-            this.leafCount = 0;
+            this.nodeCount = t.size();
+            this.leafCount = t.getLeafCount();
             this.llds = new int[start + nodeCount];
             this.labels = new ITree[start + nodeCount];
 
-            int idx = 1;
-            Map<ITree,Integer> tmpData = new HashMap<>();
-            for (ITree n: t.postOrder()) {
-                tmpData.put(n, idx);
-                this.setITree(idx, n);
-                this.setLld(idx,  tmpData.get(ZsMatcher.getFirstLeaf(n)));
-                if (n.isLeaf())
-                    leafCount++;
-                idx++;
+            for (int idx = 1; idx <= nodeCount; idx++) {
+                this.setITree(idx, t.get(idx - 1));
+                this.setLld(idx, t.lld(idx - 1) + 1);
             }
 
             setKeyRoots();
@@ -29,10 +29,6 @@ public abstract class AbstractTree implements ITree,Serializable {
 
     protected int id;
 
-    protected ITree parent;
-
-    protected List<ITree> children;
-
     protected int height;
 
     protected int size;
@@ -67,8 +63,11 @@ public abstract class AbstractTree implements ITree,Serializable {
 
     @Override
     public List<ITree> getDescendants() {
-        List<ITree> trees = TreeUtils.preOrder(this);
-        trees.remove(0);
+        List<ITree> trees = new ArrayList<>(Math.max(getSize() - 1, 0));
+        TreeUtils.preOrder(this, t -> {
+            if (t != this)
+                trees.add(t);
+        });
         return trees;
     }
 
@@ -92,25 +91,11 @@ public abstract class AbstractTree implements ITree,Serializable {
         return !NO_LABEL.equals(getLabel());
     }
 
-    @Override
-    public ITree getParent() {
-        return parent;
-    }
-
-    @Override
-    public void setParent(ITree parent) {
-        this.parent = parent;
-    }
-
     @Override
     public List<ITree> getParents() {
         List<ITree> parents = new ArrayList<>();
-        if (getParent() == null)
-            return parents;
-        else {
-            parents.add(getParent());
-            parents.addAll(getParent().getParents());
-        }
+        for (ITree p = getParent(); p != null; p = p.getParent())
+            parents.add(p);
         return parents;
     }
 
@@ -136,7 +121,33 @@ public abstract class AbstractTree implements ITree,Serializable {
         if (this.getHash() != tree.getHash())
             return false;
         else
-            return this.toStaticHashString().equals(tree.toStaticHashString());
+            return isIsomorphic(this, tree);
+    }
+
+    /**
+     * Node by node comparison of the types, labels and children, equivalent to comparing the
+     * toStaticHashString of both trees without building them. The pairs of nodes left to compare
+     * are kept on a stack rather than on the call stack.
+     */
+    private static boolean isIsomorphic(ITree t1, ITree t2) {
+        Deque<ITree> pairs = new ArrayDeque<>();
+        pairs.push(t2);
+        pairs.push(t1);
+        while (!pairs.isEmpty()) {
+            ITree n1 = pairs.pop();
+            ITree n2 = pairs.pop();
+            if (n1.getType() != n2.getType() || !n1.hasSameLabel(n2))
+                return false;
+            List<ITree> children1 = n1.getChildren();
+            List<ITree> children2 = n2.getChildren();
+            if (children1.size() != children2.size())
+                return false;
+            for (int i = children1.size() - 1; i >= 0; i--) {
+                pairs.push(children2.get(i));
+                pairs.push(children1.get(i));
+            }
+        }
+        return true;
     }
 
     @Override
@@ -158,11 +169,29 @@ public abstract class AbstractTree implements ITree,Serializable {
     public boolean hasSameTypeAndLabel(ITree t) {
         if (!hasSameType(t))
             return false;
-        else if (!getLabel().equals(t.getLabel()))
+        else if (!hasSameLabel(t))
             return false;
         return true;
     }
 
+    @Override
+    public boolean hasSameLabel(ITree t) {
+        LabelPool pool = getLabelPool();
+        if (pool != null && pool == t.getLabelPool())
+            return getLabelId() == t.getLabelId();
+        return Objects.equals(getLabel(), t.getLabel());
+    }
+
+    @Override
+    public int getLabelId() {
+        return NO_VALUE;
+    }
+
+    @Override
+    public LabelPool getLabelPool() {
+        return null;
+    }
+
     @Override
     public Iterable<ITree> preOrder() {
         return new Iterable<ITree>() {
@@ -204,10 +233,7 @@ public abstract class AbstractTree implements ITree,Serializable {
 
     @Override
     public void refresh() {
-        TreeUtils.computeSize(this);
-        TreeUtils.computeDepth(this);
-        TreeUtils.computeHeight(this);
-        HashUtils.DEFAULT_HASH_GENERATOR.hash(this);
+        TreeUtils.refresh(this, HashUtils.DEFAULT_HASH_GENERATOR, false);
     }
 
     @Override
@@ -238,11 +264,17 @@ public abstract class AbstractTree implements ITree,Serializable {
     @Override
     public String toStaticHashString() {
         StringBuilder b = new StringBuilder();
-        b.append(OPEN_SYMBOL);
-        b.append(this.toShortString());
-        for (ITree c: this.getChildren())
-            b.append(c.toStaticHashString());
-        b.append(CLOSE_SYMBOL);
+        TreeUtils.visitTree(this, new TreeUtils.TreeVisitor() {
+            @Override
+            public void startTree(ITree tree) {
+                b.append(OPEN_SYMBOL).append(tree.getType()).append(SEPARATE_SYMBOL).append(tree.getLabel());
+            }
+
+            @Override
+            public void endTree(ITree tree) {
+                b.append(CLOSE_SYMBOL);
+            }
+        });
         return b.toString();
     }
 
@@ -274,6 +306,10 @@ public abstract class AbstractTree implements ITree,Serializable {
     }
 
     public static class FakeTree extends AbstractTree {
+        private ITree parent;
+
+        private final List<ITree> children;
+
         public FakeTree(ITree... trees) {
             children = new ArrayList<>(trees.length);
             children.addAll(Arrays.asList(trees));
@@ -303,6 +339,16 @@ public abstract class AbstractTree implements ITree,Serializable {
             return children;
         }
 
+        @Override
+        public ITree getParent() {
+            return parent;
+        }
+
+        @Override
+        public void setParent(ITree parent) {
+            this.parent = parent;
+        }
+
         @Override
         public String getLabel() {
             return NO_LABEL;
@@ -0,0 +1,406 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+package com.github.gumtreediff.tree;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Array-backed tree for large ASTs. The nodes are numbered in breadth-first order, so that the
+ * children of a node are contiguous, and their types, label ids, positions, lengths, parents and
+ * first children are kept in parallel int arrays shared by the whole tree, the labels in a LabelPool.
+ * A node only holds its number and the values computed by refresh() and the numberings.
+ *
+ * The arrays are never written: the type, label, position and length of a node cannot be changed,
+ * and structural edits, such as the ones ActionGenerator makes and undoes, are kept in a sparse
+ * overlay, as are the metadata. An overlay entry is dropped as soon as the edit is undone, so that
+ * the node goes back to the arrays. Create it with {@link #copyOf(ITree, LabelPool)} or {@link TreeContext#compact()}.
+ */
+public final class CompactTree extends AbstractTree {
+
+    private final Store store;
+
+    private final int index;
+
+    private CompactTree(Store store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    /**
+     * Makes a compact copy of the given tree, keeping its metadata and the computed values of its
+     * nodes.
+     */
+    public static CompactTree copyOf(ITree root) {
+        return copyOf(root, new LabelPool());
+    }
+
+    /**
+     * Makes a compact copy of the given tree whose label ids are the ones of the given pool.
+     */
+    public static CompactTree copyOf(ITree root, LabelPool pool) {
+        List<ITree> trees = TreeUtils.breadthFirst(root);
+        Store store = new Store(trees.size(), pool);
+        int next = 1;
+        store.parents[0] = -1;
+        for (int i = 0; i < trees.size(); i++) {
+            ITree t = trees.get(i);
+            store.types[i] = t.getType();
+            store.labels[i] = t.getLabelPool() == pool ? t.getLabelId() : pool.getId(t.getLabel());
+            store.positions[i] = t.getPos();
+            store.lengths[i] = t.getLength();
+            store.firstChildren[i] = next;
+            for (int k = 0; k < t.getChildren().size(); k++)
+                store.parents[next++] = i;
+
+            CompactTree node = new CompactTree(store, i);
+            node.id = t.getId();
+            node.hash = t.getHash();
+            node.size = t.getSize();
+            node.depth = t.getDepth();
+            node.height = t.getHeight();
+            store.nodes[i] = node;
+            for (Iterator<Entry<String, Object>> it = t.getMetadata(); it.hasNext(); ) {
+                Entry<String, Object> e = it.next();
+                node.setMetadata(e.getKey(), e.getValue());
+            }
+        }
+        store.firstChildren[trees.size()] = next;
+        return store.nodes[0];
+    }
+
+    @Override
+    public void addChild(ITree t) {
+        getChildren().add(t);
+        t.setParent(this);
+    }
+
+    @Override
+    public void insertChild(ITree t, int position) {
+        getChildren().add(position, t);
+        t.setParent(this);
+    }
+
+    @Override
+    public CompactTree deepCopy() {
+        return copyOf(this, store.pool);
+    }
+
+    /**
+     * Returns a view of the children, which is not kept by the node: it reads them from the arrays,
+     * or from the overlay once they are edited.
+     */
+    @Override
+    public List<ITree> getChildren() {
+        return new Children();
+    }
+
+    /**
+     * Returns whether some node of this tree still has children or a parent that differ from the
+     * ones it was created with.
+     */
+    public boolean isEdited() {
+        return store.editedChildren != null && !store.editedChildren.isEmpty()
+                || store.editedParents != null && !store.editedParents.isEmpty();
+    }
+
+    @Override
+    public ITree getChild(int position) {
+        List<ITree> edited = store.editedChildren(index);
+        if (edited != null)
+            return edited.get(position);
+        if (position < 0 || position >= arity())
+            throw new IndexOutOfBoundsException("Child " + position + " of " + arity());
+        return store.nodes[store.firstChildren[index] + position];
+    }
+
+    @Override
+    public boolean isLeaf() {
+        List<ITree> edited = store.editedChildren(index);
+        return edited != null ? edited.isEmpty() : arity() == 0;
+    }
+
+    @Override
+    public String getLabel() {
+        return store.pool.getLabel(store.labels[index]);
+    }
+
+    @Override
+    public int getLabelId() {
+        return store.labels[index];
+    }
+
+    @Override
+    public LabelPool getLabelPool() {
+        return store.pool;
+    }
+
+    @Override
+    public int getLength() {
+        return store.lengths[index];
+    }
+
+    @Override
+    public ITree getParent() {
+        if (store.editedParents != null && store.editedParents.containsKey(index))
+            return store.editedParents.get(index);
+        return originalParent();
+    }
+
+    @Override
+    public void setParent(ITree parent) {
+        if (parent == originalParent()) {
+            if (store.editedParents != null)
+                store.editedParents.remove(index);
+        } else {
+            if (store.editedParents == null)
+                store.editedParents = new TIntObjectHashMap<>();
+            store.editedParents.put(index, parent);
+        }
+    }
+
+    @Override
+    public int positionInParent() {
+        ITree p = getParent();
+        if (p == null)
+            return -1;
+        if (p == originalParent() && store.editedChildren(p) == null)
+            return index - store.firstChildren[store.parents[index]];
+        return p.getChildren().indexOf(this);
+    }
+
+    @Override
+    public int getPos() {
+        return store.positions[index];
+    }
+
+    @Override
+    public int getType() {
+        return store.types[index];
+    }
+
+    @Override
+    public void setChildren(List<ITree> children) {
+        List<ITree> list = getChildren();
+        list.clear();
+        list.addAll(children);
+        for (ITree c : children)
+            c.setParent(this);
+    }
+
+    @Override
+    public void setLabel(String label) {
+        throw immutable();
+    }
+
+    @Override
+    public void setLength(int length) {
+        throw immutable();
+    }
+
+    @Override
+    public void setParentAndUpdateChildren(ITree parent) {
+        ITree oldParent = getParent();
+        if (oldParent != null)
+            oldParent.getChildren().remove(this);
+        setParent(parent);
+        if (parent != null)
+            parent.getChildren().add(this);
+    }
+
+    @Override
+    public void setPos(int pos) {
+        throw immutable();
+    }
+
+    @Override
+    public void setType(int type) {
+        throw immutable();
+    }
+
+    @Override
+    public Object getMetadata(String key) {
+        AssociationMap metadata = store.metadata == null ? null : store.metadata.get(index);
+        if (metadata == null)
+            return null;
+        return metadata.get(key);
+    }
+
+    @Override
+    public Object setMetadata(String key, Object value) {
+        AssociationMap metadata = store.metadata == null ? null : store.metadata.get(index);
+        if (value == null) {
+            if (metadata == null)
+                return null;
+            else
+                return metadata.remove(key);
+        }
+        if (metadata == null) {
+            if (store.metadata == null)
+                store.metadata = new TIntObjectHashMap<>();
+            metadata = new AssociationMap();
+            store.metadata.put(index, metadata);
+        }
+        return metadata.set(key, value);
+    }
+
+    @Override
+    public Iterator<Entry<String, Object>> getMetadata() {
+        AssociationMap metadata = store.metadata == null ? null : store.metadata.get(index);
+        if (metadata == null)
+            return new EmptyEntryIterator();
+        return metadata.iterator();
+    }
+
+    private int arity() {
+        return store.firstChildren[index + 1] - store.firstChildren[index];
+    }
+
+    private ITree originalParent() {
+        int parent = store.parents[index];
+        return parent == -1 ? null : store.nodes[parent];
+    }
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("The nodes of a compact tree cannot be changed");
+    }
+
+    /**
+     * The children of the node, read from the arrays until the first edit copies them to the overlay.
+     */
+    private class Children extends AbstractList<ITree> {
+
+        @Override
+        public ITree get(int position) {
+            return getChild(position);
+        }
+
+        @Override
+        public int size() {
+            List<ITree> edited = store.editedChildren(index);
+            return edited != null ? edited.size() : arity();
+        }
+
+        @Override
+        public ITree set(int position, ITree t) {
+            List<ITree> edited = edit();
+            ITree old = edited.set(position, t);
+            release(edited);
+            return old;
+        }
+
+        @Override
+        public void add(int position, ITree t) {
+            modCount++;
+            List<ITree> edited = edit();
+            edited.add(position, t);
+            release(edited);
+        }
+
+        @Override
+        public ITree remove(int position) {
+            modCount++;
+            List<ITree> edited = edit();
+            ITree old = edited.remove(position);
+            release(edited);
+            return old;
+        }
+
+        private List<ITree> edit() {
+            List<ITree> edited = store.editedChildren(index);
+            if (edited == null) {
+                edited = new ArrayList<>(arity());
+                for (int i = store.firstChildren[index]; i < store.firstChildren[index + 1]; i++)
+                    edited.add(store.nodes[i]);
+                if (store.editedChildren == null)
+                    store.editedChildren = new TIntObjectHashMap<>();
+                store.editedChildren.put(index, edited);
+            }
+            return edited;
+        }
+
+        /**
+         * Drops the overlay entry once the edited children are the original ones again.
+         */
+        private void release(List<ITree> edited) {
+            if (edited.size() != arity())
+                return;
+            int first = store.firstChildren[index];
+            for (int i = 0; i < edited.size(); i++)
+                if (edited.get(i) != store.nodes[first + i])
+                    return;
+            store.editedChildren.remove(index);
+        }
+    }
+
+    private static final class Store implements Serializable {
+
+        final CompactTree[] nodes;
+
+        final int[] types;
+
+        final int[] labels;
+
+        final int[] positions;
+
+        final int[] lengths;
+
+        final int[] parents;
+
+        /**
+         * The children of the i-th node are the nodes from firstChildren[i] to firstChildren[i + 1] - 1.
+         */
+        final int[] firstChildren;
+
+        final LabelPool pool;
+
+        TIntObjectHashMap<List<ITree>> editedChildren;
+
+        TIntObjectHashMap<ITree> editedParents;
+
+        TIntObjectHashMap<AssociationMap> metadata;
+
+        Store(int size, LabelPool pool) {
+            this.pool = pool;
+            nodes = new CompactTree[size];
+            types = new int[size];
+            labels = new int[size];
+            positions = new int[size];
+            lengths = new int[size];
+            parents = new int[size];
+            firstChildren = new int[size + 1];
+        }
+
+        List<ITree> editedChildren(int index) {
+            return editedChildren == null ? null : editedChildren.get(index);
+        }
+
+        List<ITree> editedChildren(ITree t) {
+            return t instanceof CompactTree && ((CompactTree) t).store == this
+                    ? editedChildren(((CompactTree) t).index) : null;
+        }
+    }
+}
@@ -162,6 +162,23 @@ public interface ITree {
 
     void setLabel(String label);
 
+    /**
+     * @return the id of the label in the pool where it is interned, or NO_VALUE if it is not interned
+     * @see #getLabelPool()
+     */
+    int getLabelId();
+
+    /**
+     * @return the pool where the label is interned, or null
+     */
+    LabelPool getLabelPool();
+
+    /**
+     * Indicate whether or not the tree has the same label as the given tree, comparing the label ids
+     * when both labels are interned in the same pool.
+     */
+    boolean hasSameLabel(ITree t);
+
     int getPos();
 
     void setPos(int pos);
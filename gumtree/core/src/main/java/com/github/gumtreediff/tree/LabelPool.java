@@ -0,0 +1,143 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+package com.github.gumtreediff.tree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dictionary assigning int ids to the labels of the trees, in place of the JVM string table. The nodes
+ * keep the id of their label, so the labels of trees sharing a pool are compared by id, and the hash of
+ * each distinct label is computed once. A pool belongs to a TreeContext, or is shared by the contexts
+ * of a diff through {@link #bind(LabelPool)}, and is released with them. It can be used by several
+ * threads.
+ */
+public class LabelPool implements Serializable {
+
+    private static final long BASE = 0x9E3779B97F4A7C15L;
+
+    private static final ThreadLocal<LabelPool> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile String[] labels = new String[16];
+
+    private volatile long[] hashes = new long[16];
+
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * Returns the id of the label, registering it on its first lookup.
+     */
+    public int getId(String label) {
+        lookups.increment();
+        Integer id = ids.get(label);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = ids.get(label);
+            if (id == null) {
+                id = ids.size();
+                if (id == labels.length) {
+                    labels = Arrays.copyOf(labels, id * 2);
+                    hashes = Arrays.copyOf(hashes, id * 2);
+                }
+                labels[id] = label;
+                hashes[id] = hash(label);
+                ids.put(label, id);
+            }
+            return id;
+        }
+    }
+
+    public String getLabel(int id) {
+        return labels[id];
+    }
+
+    /**
+     * @return the hash of the characters of the label of the given id
+     * @see #hash(String)
+     */
+    public long getHash(int id) {
+        return hashes[id];
+    }
+
+    /**
+     * Returns the instance of the pool equal to the label.
+     */
+    public String intern(String label) {
+        return getLabel(getId(label));
+    }
+
+    /**
+     * @return the number of distinct labels
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of lookups per distinct label
+     */
+    public double getDedupRatio() {
+        int size = size();
+        return size == 0 ? 1D : (double) getLookups() / size;
+    }
+
+    /**
+     * Hash of the characters of a label, which does not depend on the pool.
+     */
+    public static long hash(String label) {
+        long h = label.length();
+        for (int i = 0; i < label.length(); i++)
+            h = (h ^ label.charAt(i)) * BASE;
+        return h;
+    }
+
+    /**
+     * Returns the pool bound to the current thread, or a new pool if there is none.
+     */
+    public static LabelPool current() {
+        LabelPool pool = CURRENT.get();
+        return pool == null ? new LabelPool() : pool;
+    }
+
+    /**
+     * Binds a pool to the current thread, so that the contexts it creates share it, or unbinds the
+     * current pool when given null.
+     */
+    public static void bind(LabelPool pool) {
+        if (pool == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(pool);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d labels for %d lookups (dedup ratio %.2f)", size(), getLookups(), getDedupRatio());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+
+package com.github.gumtreediff.tree;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Read-only view of a tree without some of its subtrees. The pruned subtrees are skipped by the
+ * view but left untouched in the tree, so a subtree can be matched without its matched nodes and
+ * without being copied. The nodes of the view are numbered in post-order, from 0 to size() - 1.
+ */
+public class PrunedTree {
+
+    private final ITree root;
+
+    private final ITree[] nodes;
+
+    private final int[] llds;
+
+    private final int leafCount;
+
+    public PrunedTree(ITree root) {
+        this(root, t -> false);
+    }
+
+    /**
+     * @param pruned selects the subtrees left out of the view, the root excepted
+     */
+    public PrunedTree(ITree root, Predicate<ITree> pruned) {
+        this.root = root;
+        ITree[] nodes = new ITree[Math.max(root.getSize(), 1)];
+        int[] llds = new int[nodes.length];
+        int size = 0;
+        int leaves = 0;
+
+        // Iterative post-order, firstLeaves[d] being the leftmost leaf of the node at depth d once
+        // one of its children has been visited. The arrays grow if the metrics of the tree are stale.
+        ITree[] path = new ITree[Math.max(root.getHeight(), 0) + 1];
+        int[] nextChild = new int[path.length];
+        int[] firstLeaves = new int[path.length];
+        int depth = 0;
+        path[0] = root;
+        firstLeaves[0] = -1;
+        while (depth >= 0) {
+            ITree t = path[depth];
+            if (nextChild[depth] < t.getChildren().size()) {
+                ITree c = t.getChild(nextChild[depth]++);
+                if (!pruned.test(c)) {
+                    if (depth + 1 == path.length) {
+                        path = Arrays.copyOf(path, path.length * 2);
+                        nextChild = Arrays.copyOf(nextChild, path.length);
+                        firstLeaves = Arrays.copyOf(firstLeaves, path.length);
+                    }
+                    depth++;
+                    path[depth] = c;
+                    nextChild[depth] = 0;
+                    firstLeaves[depth] = -1;
+                }
+            } else {
+                int lld = firstLeaves[depth];
+                if (lld == -1) {
+                    lld = size;
+                    leaves++;
+                }
+                if (size == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, size * 2 + 1);
+                    llds = Arrays.copyOf(llds, nodes.length);
+                }
+                nodes[size] = t;
+                llds[size] = lld;
+                size++;
+                depth--;
+                if (depth >= 0 && firstLeaves[depth] == -1)
+                    firstLeaves[depth] = lld;
+            }
+        }
+
+        this.nodes = Arrays.copyOf(nodes, size);
+        this.llds = Arrays.copyOf(llds, size);
+        this.leafCount = leaves;
+    }
+
+    public ITree getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * @return the i-th node of the view in post-order
+     */
+    public ITree get(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * @return the post-order number of the leftmost leaf descendant of the i-th node of the view
+     */
+    public int lld(int i) {
+        return llds[i];
+    }
+
+    public boolean isLeaf(int i) {
+        return llds[i] == i;
+    }
+}
@@ -21,7 +21,9 @@
 package com.github.gumtreediff.tree;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
@@ -32,6 +34,14 @@ public class Tree extends AbstractTree implements ITree {
 
     private String label;
 
+    private ITree parent;
+
+    private List<ITree> children;
+
+    // Id of the label in the pool where it is interned, see TreeContext
+    private transient LabelPool labelPool;
+    private transient int labelId;
+
     // Begin position of the tree in terms of absolute character index and length
     private int pos;
     private int length;
@@ -45,7 +55,7 @@ public class Tree extends AbstractTree implements ITree {
      */
     public Tree(int type, String label) {
         this.type = type;
-        this.label = (label == null) ? NO_LABEL : label.intern();
+        this.label = (label == null) ? NO_LABEL : label;
         this.id = NO_ID;
         this.depth = NO_VALUE;
         this.hash = NO_VALUE;
@@ -62,6 +72,8 @@ public class Tree extends AbstractTree implements ITree {
     private Tree(Tree other) {
         this.type = other.type;
         this.label = other.getLabel();
+        this.labelPool = other.labelPool;
+        this.labelId = other.labelId;
         this.id = other.getId();
         this.pos = other.getPos();
         this.length = other.getLength();
@@ -88,9 +100,25 @@ public class Tree extends AbstractTree implements ITree {
 
     @Override
     public Tree deepCopy() {
+        // The nodes left to copy are kept on a stack, so deep trees do not overflow the call stack.
         Tree copy = new Tree(this);
-        for (ITree child : getChildren())
-            copy.addChild(child.deepCopy());
+        Deque<Tree> originals = new ArrayDeque<>();
+        Deque<Tree> copies = new ArrayDeque<>();
+        originals.push(this);
+        copies.push(copy);
+        while (!originals.isEmpty()) {
+            Tree original = originals.pop();
+            Tree parent = copies.pop();
+            for (ITree child : original.getChildren()) {
+                if (child instanceof Tree) {
+                    Tree childCopy = new Tree((Tree) child);
+                    parent.addChild(childCopy);
+                    originals.push((Tree) child);
+                    copies.push(childCopy);
+                } else
+                    parent.addChild(child.deepCopy());
+            }
+        }
         return copy;
     }
 
@@ -134,6 +162,26 @@ public class Tree extends AbstractTree implements ITree {
     @Override
     public void setLabel(String label) {
         this.label = label;
+        this.labelPool = null;
+    }
+
+    /**
+     * Sets the label to the one of the given id in the pool.
+     */
+    void setLabel(LabelPool pool, int id) {
+        this.label = pool.getLabel(id);
+        this.labelPool = pool;
+        this.labelId = id;
+    }
+
+    @Override
+    public int getLabelId() {
+        return labelPool == null ? NO_VALUE : labelId;
+    }
+
+    @Override
+    public LabelPool getLabelPool() {
+        return labelPool;
     }
 
     @Override
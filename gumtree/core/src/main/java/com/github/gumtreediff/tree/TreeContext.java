@@ -24,6 +24,7 @@ import com.github.gumtreediff.io.TreeIoUtils;
 import com.github.gumtreediff.io.TreeIoUtils.MetadataSerializer;
 import com.github.gumtreediff.io.TreeIoUtils.MetadataUnserializer;
 import com.github.gumtreediff.io.TreeIoUtils.TreeFormatter;
+import com.github.gumtreediff.tree.hash.HashUtils;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -37,8 +38,26 @@ public class TreeContext {
 
     private final MetadataSerializers serializers = new MetadataSerializers();
 
+    private final LabelPool labels;
+
     private ITree root;
 
+    /**
+     * Creates a context interning its labels in the pool bound to the current thread, if any.
+     * @see LabelPool#bind(LabelPool)
+     */
+    public TreeContext() {
+        this(LabelPool.current());
+    }
+
+    /**
+     * Creates a context interning its labels in the given pool, which can be shared with other
+     * contexts, such as the ones of the two trees of a diff.
+     */
+    public TreeContext(LabelPool labels) {
+        this.labels = labels;
+    }
+
     @Override
     public String toString() {
         return TreeIoUtils.toLisp(this).toString();
@@ -75,7 +94,9 @@ public class TreeContext {
 
     public ITree createTree(int type, String label, String typeLabel) {
         registerTypeLabel(type, typeLabel);
-        return new Tree(type, label);
+        Tree t = new Tree(type, null);
+        t.setLabel(labels, labels.getId(label == null ? ITree.NO_LABEL : label));
+        return t;
 
     }
 
@@ -83,9 +104,30 @@ public class TreeContext {
         return new AbstractTree.FakeTree(trees);
     }
 
+    /**
+     * Interns the labels of the nodes that were not created by this context or were relabelled since,
+     * then refreshes and numbers the tree.
+     */
     public void validate() {
-        root.refresh();
-        TreeUtils.postOrderNumbering(root);
+        if (!(root instanceof CompactTree)) {
+            for (ITree t : root.preOrder())
+                if (t.getLabelPool() != labels && t instanceof Tree)
+                    ((Tree) t).setLabel(labels, labels.getId(t.getLabel()));
+        }
+        TreeUtils.refresh(root, HashUtils.DEFAULT_HASH_GENERATOR, true);
+    }
+
+    /**
+     * Replaces the tree by a compact copy, whose label ids are the ones of the pool, and validates it.
+     * @see CompactTree
+     */
+    public void compact() {
+        root = CompactTree.copyOf(root, labels);
+        validate();
+    }
+
+    public LabelPool getLabelPool() {
+        return labels;
     }
 
     public boolean hasLabelFor(int type) {
@@ -177,7 +219,7 @@ public class TreeContext {
     }
 
     public TreeContext deriveTree() { // FIXME Should we refactor TreeContext class to allow shared metadata etc ...
-        TreeContext newContext = new TreeContext();
+        TreeContext newContext = new TreeContext(labels);
         newContext.setRoot(getRoot().deepCopy());
         newContext.typeLabels = typeLabels;
         newContext.metadata.putAll(metadata);
@@ -289,5 +331,11 @@ public class TreeContext {
                     tree.setMetadata(key, s.fromString(value));
             }
         }
+
+        public void load(TreeContext context, String key, String value) throws Exception {
+            MetadataUnserializer s = serializers.get(key);
+            if (s != null)
+                context.setMetadata(key, s.fromString(value));
+        }
     }
 }
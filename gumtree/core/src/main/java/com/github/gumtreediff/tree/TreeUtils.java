@@ -22,12 +22,14 @@ package com.github.gumtreediff.tree;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
-import com.github.gumtreediff.utils.Pair;
+import com.github.gumtreediff.tree.hash.HashGenerator;
 
 public final class TreeUtils {
 
@@ -40,13 +42,12 @@ public final class TreeUtils {
      * @param tree a Tree
      */
     public static void computeSize(ITree tree) {
-        for (ITree t: tree.postOrder()) {
+        postOrder(tree, t -> {
             int size = 1;
-            if (!t.isLeaf())
-                for (ITree c: t.getChildren())
-                    size += c.getSize();
+            for (ITree c: t.getChildren())
+                size += c.getSize();
             t.setSize(size);
-        }
+        });
     }
 
     /**
@@ -55,12 +56,7 @@ public final class TreeUtils {
      * @param tree a Tree
      */
     public static void computeDepth(ITree tree) {
-        List<ITree> trees = preOrder(tree);
-        for (ITree t: trees) {
-            int depth = 0;
-            if (!t.isRoot()) depth = t.getParent().getDepth() + 1;
-            t.setDepth(depth);
-        }
+        preOrder(tree, t -> t.setDepth(t.isRoot() ? 0 : t.getParent().getDepth() + 1));
     }
 
     /**
@@ -69,17 +65,40 @@ public final class TreeUtils {
      * @param tree a Tree.
      */
     public static void computeHeight(ITree tree) {
-        for (ITree t: tree.postOrder()) {
-            int height = 0;
-            if (!t.isLeaf()) {
-                for (ITree c: t.getChildren()) {
-                    int cHeight = c.getHeight();
-                    if (cHeight > height) height = cHeight;
-                }
-                height++;
-            }
-            t.setHeight(height);
+        postOrder(tree, t -> t.setHeight(height(t)));
+    }
+
+    private static int height(ITree t) {
+        List<ITree> children = t.getChildren();
+        if (children.isEmpty())
+            return 0;
+        int height = 0;
+        for (ITree c: children) {
+            int cHeight = c.getHeight();
+            if (cHeight > height) height = cHeight;
         }
+        return height + 1;
+    }
+
+    /**
+     * Computes the size, depth, height and hash of every node of the tree in a single post-order
+     * traversal, and numbers the nodes in post-order if asked. The depth of the tree is computed
+     * from the one of its parent.
+     * @see ITree#refresh()
+     */
+    public static void refresh(ITree tree, HashGenerator generator, boolean postOrderNumbering) {
+        int[] ids = {0};
+        Consumer<ITree> hasher = generator.postOrderHasher(tree);
+        visitTree(tree, t -> t.setDepth(t.isRoot() ? 0 : t.getParent().getDepth() + 1), t -> {
+            int size = 1;
+            for (ITree c: t.getChildren())
+                size += c.getSize();
+            t.setSize(size);
+            t.setHeight(height(t));
+            if (postOrderNumbering)
+                t.setId(ids[0]++);
+            hasher.accept(t);
+        });
     }
 
     /**
@@ -87,16 +106,16 @@ public final class TreeUtils {
      * @param tree a Tree.
      */
     public static List<ITree> preOrder(ITree tree) {
-        List<ITree> trees = new ArrayList<>();
-        preOrder(tree, trees);
+        List<ITree> trees = new ArrayList<>(Math.max(tree.getSize(), 1));
+        preOrder(tree, trees::add);
         return trees;
     }
 
-    private static void preOrder(ITree tree, List<ITree> trees) {
-        trees.add(tree);
-        if (!tree.isLeaf())
-            for (ITree c: tree.getChildren())
-                preOrder(c, trees);
+    /**
+     * Visits every subtree and the tree using a pre-order, without building a list of them.
+     */
+    public static void preOrder(ITree tree, Consumer<ITree> visitor) {
+        visitTree(tree, visitor, null);
     }
 
     public static void preOrderNumbering(ITree tree) {
@@ -108,14 +127,11 @@ public final class TreeUtils {
      * @param tree a Tree.
      */
     public static List<ITree> breadthFirst(ITree tree) {
-        List<ITree> trees = new ArrayList<>();
-        List<ITree> currents = new ArrayList<>();
-        currents.add(tree);
-        while (currents.size() > 0) {
-            ITree c = currents.remove(0);
-            trees.add(c);
-            currents.addAll(c.getChildren());
-        }
+        // The list is its own queue.
+        List<ITree> trees = new ArrayList<>(Math.max(tree.getSize(), 1));
+        trees.add(tree);
+        for (int i = 0; i < trees.size(); i++)
+            trees.addAll(trees.get(i).getChildren());
         return trees;
     }
 
@@ -175,21 +191,22 @@ public final class TreeUtils {
      * @param tree a Tree.
      */
     public static List<ITree> postOrder(ITree tree) {
-        List<ITree> trees = new ArrayList<>();
-        postOrder(tree, trees);
+        List<ITree> trees = new ArrayList<>(Math.max(tree.getSize(), 1));
+        postOrder(tree, trees::add);
         return trees;
     }
 
-    private static void postOrder(ITree tree, List<ITree> trees) {
-        if (!tree.isLeaf())
-            for (ITree c: tree.getChildren())
-                postOrder(c, trees);
-        trees.add(tree);
+    /**
+     * Visits every subtree and the tree using a post-order, without building a list of them.
+     */
+    public static void postOrder(ITree tree, Consumer<ITree> visitor) {
+        visitTree(tree, null, visitor);
     }
 
     public static Iterator<ITree> postOrderIterator(final ITree tree) {
         return new Iterator<ITree>() {
-            Deque<Pair<ITree, Iterator<ITree>>> stack = new ArrayDeque<>();
+            Deque<ITree> trees = new ArrayDeque<>();
+            Deque<Iterator<ITree>> stack = new ArrayDeque<>();
             {
                 push(tree);
             }
@@ -203,21 +220,21 @@ public final class TreeUtils {
             public ITree next() {
                 if (stack.isEmpty())
                     throw new NoSuchElementException();
-                return selectNextChild(stack.peek().getSecond());
-            }
-
-            ITree selectNextChild(Iterator<ITree> it) {
-                if (!it.hasNext())
-                    return stack.pop().getFirst();
-                ITree item = it.next();
-                if (item.isLeaf())
-                    return item;
-                return selectNextChild(push(item));
+                Iterator<ITree> it = stack.peek();
+                while (it.hasNext()) {
+                    ITree item = it.next();
+                    if (item.isLeaf())
+                        return item;
+                    it = push(item);
+                }
+                stack.pop();
+                return trees.pop();
             }
 
             private Iterator<ITree> push(ITree item) {
                 Iterator<ITree> it = item.getChildren().iterator();
-                stack.push(new Pair<>(item, it));
+                trees.push(item);
+                stack.push(it);
                 return it;
             }
 
@@ -229,19 +246,39 @@ public final class TreeUtils {
     }
 
     public static void visitTree(ITree root, TreeVisitor visitor) {
-        Deque<Pair<ITree, Iterator<ITree>>> stack = new ArrayDeque<>();
-        stack.push(new Pair<>(root, root.getChildren().iterator()));
-        visitor.startTree(root);
-        while (!stack.isEmpty()) {
-            Pair<ITree, Iterator<ITree>> it = stack.peek();
-
-            if (!it.second.hasNext()) {
-                visitor.endTree(it.first);
-                stack.pop();
+        visitTree(root, visitor::startTree, visitor::endTree);
+    }
+
+    /**
+     * Depth-first traversal keeping the path to the current node in arrays, so that the depth of the
+     * tree is not bounded by the stack and no object is allocated per node.
+     * @param start called on a node before its children, if not null
+     * @param end called on a node after its children, if not null
+     */
+    private static void visitTree(ITree root, Consumer<ITree> start, Consumer<ITree> end) {
+        ITree[] path = new ITree[Math.max(root.getHeight(), 0) + 1];
+        int[] nextChild = new int[path.length];
+        int depth = 0;
+        path[0] = root;
+        if (start != null)
+            start.accept(root);
+        while (depth >= 0) {
+            ITree t = path[depth];
+            List<ITree> children = t.getChildren();
+            if (nextChild[depth] < children.size()) {
+                ITree c = children.get(nextChild[depth]++);
+                if (++depth == path.length) {
+                    path = Arrays.copyOf(path, path.length * 2);
+                    nextChild = Arrays.copyOf(nextChild, path.length);
+                }
+                path[depth] = c;
+                nextChild[depth] = 0;
+                if (start != null)
+                    start.accept(c);
             } else {
-                ITree child = it.second.next();
-                stack.push(new Pair<>(child, child.getChildren().iterator()));
-                visitor.startTree(child);
+                if (end != null)
+                    end.accept(t);
+                path[depth--] = null;
             }
         }
     }
@@ -292,7 +329,8 @@ public final class TreeUtils {
 
     public static Iterator<ITree> leafIterator(final Iterator<ITree> it) {
         return new Iterator<ITree>() {
-            ITree current = it.hasNext() ? it.next() : null;
+            ITree current = nextLeaf();
+
             @Override
             public boolean hasNext() {
                 return current != null;
@@ -300,13 +338,20 @@ public final class TreeUtils {
 
             @Override
             public ITree next() {
+                if (current == null)
+                    throw new NoSuchElementException();
                 ITree val = current;
+                current = nextLeaf();
+                return val;
+            }
+
+            private ITree nextLeaf() {
                 while (it.hasNext()) {
-                    current = it.next();
-                    if (current.isLeaf())
-                        break;
+                    ITree t = it.next();
+                    if (t.isLeaf())
+                        return t;
                 }
-                return val;
+                return null;
             }
 
             @Override
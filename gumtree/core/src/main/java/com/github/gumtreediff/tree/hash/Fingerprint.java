@@ -0,0 +1,110 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2011-2015 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ * Copyright 2011-2015 Floréal Morandat <florealm@gmail.com>
+ */
+
+package com.github.gumtreediff.tree.hash;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A 128-bit structural fingerprint of a tree.
+ *
+ * @see FingerprintHashGenerator
+ */
+public final class Fingerprint {
+
+    public static final int BYTES = 16;
+
+    private final long high;
+
+    private final long low;
+
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static Fingerprint fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, BYTES);
+        return new Fingerprint(buffer.getLong(), buffer.getLong());
+    }
+
+    public static Fingerprint fromString(String hex) {
+        if (hex.length() != 2 * BYTES)
+            throw new IllegalArgumentException("Not a fingerprint: " + hex);
+        return new Fingerprint(Long.parseUnsignedLong(hex.substring(0, BYTES), 16),
+                Long.parseUnsignedLong(hex.substring(BYTES), 16));
+    }
+
+    /**
+     * Combines several fingerprints, in order, into a single one.
+     */
+    public static Fingerprint combine(Fingerprint... parts) {
+        MessageDigest md = md5();
+        byte[] bytes = new byte[BYTES];
+        for (Fingerprint part : parts) {
+            part.writeTo(bytes);
+            md.update(bytes);
+        }
+        return fromBytes(md.digest());
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public void writeTo(byte[] bytes) {
+        ByteBuffer.wrap(bytes).putLong(high).putLong(low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Fingerprint))
+            return false;
+        Fingerprint other = (Fingerprint) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    /**
+     * Returns the fingerprint as 32 hexadecimal digits.
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
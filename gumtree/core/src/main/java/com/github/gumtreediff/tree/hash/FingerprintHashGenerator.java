@@ -0,0 +1,79 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2011-2015 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ * Copyright 2011-2015 Floréal Morandat <florealm@gmail.com>
+ */
+
+package com.github.gumtreediff.tree.hash;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import com.github.gumtreediff.tree.ITree;
+
+/**
+ * Computes a 128-bit fingerprint of every node from its type, its label and the fingerprints of its
+ * children, so that two trees have the same fingerprint exactly when they have the same
+ * toStaticHashString(), up to MD5 collisions. Unlike the static hash string, the fingerprint has a
+ * fixed width whatever the size of the tree and is computed in a single post-order traversal.
+ *
+ * The fingerprint of a node is kept in its FINGERPRINT metadata and its first 32 bits are used as
+ * the hash of the node.
+ */
+public class FingerprintHashGenerator implements HashGenerator {
+
+    public static final String FINGERPRINT = "fingerprint";
+
+    @Override
+    public void hash(ITree t) {
+        MessageDigest md = Fingerprint.md5();
+        byte[] bytes = new byte[Fingerprint.BYTES];
+        for (ITree n: t.postOrder()) {
+            md.update(intToBytes(n.getType()));
+            byte[] label = n.getLabel().getBytes(StandardCharsets.UTF_8);
+            md.update(intToBytes(label.length));
+            md.update(label);
+            md.update(intToBytes(n.getChildren().size()));
+            for (ITree c: n.getChildren()) {
+                getFingerprint(c).writeTo(bytes);
+                md.update(bytes);
+            }
+            Fingerprint fingerprint = Fingerprint.fromBytes(md.digest());
+            n.setMetadata(FINGERPRINT, fingerprint);
+            n.setHash((int) (fingerprint.getHigh() >>> 32));
+        }
+    }
+
+    /**
+     * Returns the fingerprint of a tree hashed by this generator.
+     */
+    public static Fingerprint getFingerprint(ITree t) {
+        return (Fingerprint) t.getMetadata(FINGERPRINT);
+    }
+
+    /**
+     * Hashes a tree and returns the fingerprint of its root.
+     */
+    public static Fingerprint fingerprint(ITree t) {
+        new FingerprintHashGenerator().hash(t);
+        return getFingerprint(t);
+    }
+
+    private static byte[] intToBytes(int i) {
+        return new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+    }
+}
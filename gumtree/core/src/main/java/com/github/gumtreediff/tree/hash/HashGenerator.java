@@ -20,10 +20,25 @@
 
 package com.github.gumtreediff.tree.hash;
 
+import java.util.function.Consumer;
+
 import com.github.gumtreediff.tree.ITree;
 
 public interface HashGenerator {
 
     public void hash(ITree t);
 
+    /**
+     * Returns a function hashing the nodes of the given tree one by one in post-order, once the size of
+     * a node and the hashes of its children are set, so that the hashes can be computed in the same
+     * traversal as the sizes. By default, the whole tree is hashed when its root is reached.
+     * @see com.github.gumtreediff.tree.TreeUtils#refresh(ITree, HashGenerator, boolean)
+     */
+    public default Consumer<ITree> postOrderHasher(ITree root) {
+        return t -> {
+            if (t == root)
+                hash(root);
+        };
+    }
+
 }
@@ -31,7 +31,21 @@ public class HashUtils {
 
     public static final int BASE = 33;
 
-    public static final HashGenerator DEFAULT_HASH_GENERATOR = new RollingHashGenerator.Md5RollingHashGenerator();
+    /**
+     * The generator used to refresh the trees, chosen with the gt.hash property: md5 (the default) or murmur3.
+     */
+    public static final HashGenerator DEFAULT_HASH_GENERATOR = hashGenerator(System.getProperty("gt.hash", "md5"));
+
+    public static HashGenerator hashGenerator(String name) {
+        switch (name) {
+            case "md5":
+                return new RollingHashGenerator.Md5RollingHashGenerator();
+            case "murmur3":
+                return new Murmur3RollingHashGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown hash generator: " + name);
+        }
+    }
 
     public static int byteArrayToInt(byte[] b) {
         return   b[3] & 0xFF | (b[2] & 0xFF) << 8 | (b[1] & 0xFF) << 16 | (b[0] & 0xFF) << 24;
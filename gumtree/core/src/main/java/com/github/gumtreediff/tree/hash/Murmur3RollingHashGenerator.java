@@ -0,0 +1,116 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+package com.github.gumtreediff.tree.hash;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.LabelPool;
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * A rolling hash over 64-bit words. The opening and closing words of a node are mixed from its type and
+ * the hash of its label with the Murmur3 finalizer, without building any seed String. The label hash
+ * is the one cached by the label pool when the label is interned. The powers of the base come from a
+ * table shared by all trees. The hashes of the children are kept on a stack during the post-order
+ * traversal and the 64-bit hash of a node is folded into its int hash.
+ *
+ * Select it as the default generator with -Dgt.hash=murmur3.
+ */
+public class Murmur3RollingHashGenerator implements HashGenerator {
+
+    private static final long BASE = 0x9E3779B97F4A7C15L;
+
+    private static final long OPEN = 0x5851F42D4C957F2DL;
+
+    private static final long CLOSE = 0x14057B7EF767814FL;
+
+    private static volatile long[] powers = {1L};
+
+    @Override
+    public void hash(ITree t) {
+        Consumer<ITree> hasher = postOrderHasher(t);
+        for (ITree n: t.postOrder())
+            hasher.accept(n);
+    }
+
+    @Override
+    public Consumer<ITree> postOrderHasher(ITree root) {
+        TLongArrayList hashes = new TLongArrayList();
+        return n -> {
+            List<ITree> children = n.getChildren();
+            int arity = children.size();
+            int first = hashes.size() - arity;
+            int size = n.getSize() * 2 - 1;
+            long[] powers = powers(size + 1);
+            long seed = seed(n);
+            long hash = mix(seed ^ OPEN) * powers[size];
+            for (int i = 0; i < arity; i++) {
+                size -= children.get(i).getSize() * 2;
+                hash += hashes.get(first + i) * powers[size];
+            }
+            hash += mix(seed ^ CLOSE);
+            hashes.remove(first, arity);
+            hashes.add(hash);
+            long mixed = mix(hash);
+            n.setHash((int) (mixed ^ (mixed >>> 32)));
+        };
+    }
+
+    private static long seed(ITree t) {
+        LabelPool labels = t.getLabelPool();
+        long h = labels != null ? labels.getHash(t.getLabelId()) : LabelPool.hash(t.getLabel());
+        return mix(h) + t.getType();
+    }
+
+    /**
+     * The finalization mix of Murmur3, in which every bit of the input affects every bit of the output.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns a table holding at least the first length powers of the base.
+     */
+    private static long[] powers(int length) {
+        long[] table = powers;
+        if (table.length >= length)
+            return table;
+        synchronized (Murmur3RollingHashGenerator.class) {
+            table = powers;
+            if (table.length < length) {
+                int from = table.length;
+                table = Arrays.copyOf(table, Math.max(length, 2 * from));
+                for (int i = from; i < table.length; i++)
+                    table[i] = table[i - 1] * BASE;
+                powers = table;
+            }
+            return table;
+        }
+    }
+}
@@ -22,6 +22,7 @@ package com.github.gumtreediff.tree.hash;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import com.github.gumtreediff.tree.ITree;
 import static com.github.gumtreediff.tree.hash.HashUtils.*;
@@ -30,10 +31,19 @@ public abstract class RollingHashGenerator implements HashGenerator {
 
     public void hash(ITree t) {
         for (ITree n: t.postOrder())
-            if (n.isLeaf())
-                n.setHash(leafHash(n));
-            else
-                n.setHash(innerNodeHash(n));
+            hashNode(n);
+    }
+
+    @Override
+    public Consumer<ITree> postOrderHasher(ITree root) {
+        return this::hashNode;
+    }
+
+    private void hashNode(ITree n) {
+        if (n.isLeaf())
+            n.setHash(leafHash(n));
+        else
+            n.setHash(innerNodeHash(n));
     }
 
     public abstract int hashFunction(String s);
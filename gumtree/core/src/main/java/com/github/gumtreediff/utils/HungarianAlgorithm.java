@@ -45,7 +45,10 @@ import java.util.Arrays;
  * @author Kevin L. Stern
  */
 public class HungarianAlgorithm {
-    private final double[][] costMatrix;
+    /**
+     * The square cost matrix, where costs[w * dim + j] holds the cost of assigning worker w to job j.
+     */
+    private final double[] costs;
     private final int rows;
     private final int cols;
     private final int dim;
@@ -68,20 +71,53 @@ public class HungarianAlgorithm {
      *            same length.
      */
     public HungarianAlgorithm(double[][] costMatrix) {
-        this.dim = Math.max(costMatrix.length, costMatrix[0].length);
-        this.rows = costMatrix.length;
-        this.cols = costMatrix[0].length;
-        this.costMatrix = new double[this.dim][this.dim];
-        for (int w = 0; w < this.dim; w++) {
-            if (w < costMatrix.length) {
-                if (costMatrix[w].length != this.cols) {
-                    throw new IllegalArgumentException("Irregular cost matrix");
-                }
-                this.costMatrix[w] = Arrays.copyOf(costMatrix[w], this.dim);
-            } else {
-                this.costMatrix[w] = new double[this.dim];
+        this(costMatrix.length, costMatrix[0].length, null);
+        for (int w = 0; w < this.rows; w++) {
+            if (costMatrix[w].length != this.cols) {
+                throw new IllegalArgumentException("Irregular cost matrix");
             }
+            System.arraycopy(costMatrix[w], 0, this.costs, w * this.dim, this.cols);
         }
+    }
+
+    /**
+     * Construct an instance of the algorithm from a cost matrix stored by rows
+     * in an array, which can be a reused buffer longer than the matrix. When
+     * the array holds at least max(rows, cols)^2 cells, the algorithm works in
+     * it and overwrites it, otherwise the matrix is copied.
+     *
+     * @param costs
+     *            the cost matrix, where costs[i * cols + j] holds the cost of
+     *            assigning worker i to job j, for all i, j.
+     * @param rows
+     *            the number of workers.
+     * @param cols
+     *            the number of jobs.
+     */
+    public HungarianAlgorithm(double[] costs, int rows, int cols) {
+        this(rows, cols, costs.length >= Math.max(rows, cols) * Math.max(rows, cols) ? costs : null);
+        if (this.costs != costs) {
+            for (int w = 0; w < rows; w++) {
+                System.arraycopy(costs, w * cols, this.costs, w * dim, cols);
+            }
+            return;
+        }
+        // Spread the rows from a width of cols to a width of dim, starting
+        // from the last one so that no row is overwritten before it is moved.
+        if (cols < dim) {
+            for (int w = rows - 1; w >= 0; w--) {
+                System.arraycopy(costs, w * cols, costs, w * dim, cols);
+                Arrays.fill(costs, w * dim + cols, (w + 1) * dim, 0);
+            }
+        }
+        Arrays.fill(costs, rows * dim, dim * dim, 0);
+    }
+
+    private HungarianAlgorithm(int rows, int cols, double[] costs) {
+        this.dim = Math.max(rows, cols);
+        this.rows = rows;
+        this.cols = cols;
+        this.costs = costs != null ? costs : new double[this.dim * this.dim];
         labelByWorker = new double[this.dim];
         labelByJob = new double[this.dim];
         minSlackWorkerByJob = new int[this.dim];
@@ -105,8 +141,8 @@ public class HungarianAlgorithm {
         }
         for (int w = 0; w < dim; w++) {
             for (int j = 0; j < dim; j++) {
-                if (costMatrix[w][j] < labelByJob[j]) {
-                    labelByJob[j] = costMatrix[w][j];
+                if (costs[w * dim + j] < labelByJob[j]) {
+                    labelByJob[j] = costs[w * dim + j];
                 }
             }
         }
@@ -196,7 +232,7 @@ public class HungarianAlgorithm {
                 committedWorkers[worker] = true;
                 for (int j = 0; j < dim; j++) {
                     if (parentWorkerByCommittedJob[j] == -1) {
-                        double slack = costMatrix[worker][j]
+                        double slack = costs[worker * dim + j]
                                 - labelByWorker[worker] - labelByJob[j];
                         if (minSlackValueByJob[j] > slack) {
                             minSlackValueByJob[j] = slack;
@@ -230,7 +266,7 @@ public class HungarianAlgorithm {
             for (int j = 0; j < dim; j++) {
                 if (matchJobByWorker[w] == -1
                         && matchWorkerByJob[j] == -1
-                        && costMatrix[w][j] - labelByWorker[w] - labelByJob[j] == 0) {
+                        && costs[w * dim + j] - labelByWorker[w] - labelByJob[j] == 0) {
                     match(w, j);
                 }
             }
@@ -250,7 +286,7 @@ public class HungarianAlgorithm {
         Arrays.fill(parentWorkerByCommittedJob, -1);
         committedWorkers[w] = true;
         for (int j = 0; j < dim; j++) {
-            minSlackValueByJob[j] = costMatrix[w][j] - labelByWorker[w]
+            minSlackValueByJob[j] = costs[w * dim + j] - labelByWorker[w]
                     - labelByJob[j];
             minSlackWorkerByJob[j] = w;
         }
@@ -274,12 +310,12 @@ public class HungarianAlgorithm {
         for (int w = 0; w < dim; w++) {
             double min = Double.POSITIVE_INFINITY;
             for (int j = 0; j < dim; j++) {
-                if (costMatrix[w][j] < min) {
-                    min = costMatrix[w][j];
+                if (costs[w * dim + j] < min) {
+                    min = costs[w * dim + j];
                 }
             }
             for (int j = 0; j < dim; j++) {
-                costMatrix[w][j] -= min;
+                costs[w * dim + j] -= min;
             }
         }
         double[] min = new double[dim];
@@ -288,14 +324,14 @@ public class HungarianAlgorithm {
         }
         for (int w = 0; w < dim; w++) {
             for (int j = 0; j < dim; j++) {
-                if (costMatrix[w][j] < min[j]) {
-                    min[j] = costMatrix[w][j];
+                if (costs[w * dim + j] < min[j]) {
+                    min[j] = costs[w * dim + j];
                 }
             }
         }
         for (int w = 0; w < dim; w++) {
             for (int j = 0; j < dim; j++) {
-                costMatrix[w][j] -= min[j];
+                costs[w * dim + j] -= min[j];
             }
         }
     }
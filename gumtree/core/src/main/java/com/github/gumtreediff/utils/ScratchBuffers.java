@@ -0,0 +1,61 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+
+package com.github.gumtreediff.utils;
+
+/**
+ * Arrays reused by the successive diffs run on a thread, sparing the allocation of the large
+ * matching tables. The content of a returned array is unspecified and it may be longer than asked
+ * for. Arrays of more than MAX_RETAINED cells are allocated for the caller only, so that a huge
+ * diff does not leave its memory attached to the thread.
+ */
+public final class ScratchBuffers {
+
+    public static int MAX_RETAINED = Integer.parseInt(System.getProperty("gt.scratch.max", "4194304"));
+
+    /**
+     * Number of arrays of each type a thread can use at the same time.
+     */
+    public static final int SLOTS = 2;
+
+    private static final ThreadLocal<double[][]> DOUBLES = ThreadLocal.withInitial(() -> new double[SLOTS][0]);
+
+    private static final ThreadLocal<int[][]> INTS = ThreadLocal.withInitial(() -> new int[SLOTS][0]);
+
+    private ScratchBuffers() {}
+
+    public static double[] doubles(int slot, int length) {
+        if (length > MAX_RETAINED)
+            return new double[length];
+        double[][] buffers = DOUBLES.get();
+        if (buffers[slot].length < length)
+            buffers[slot] = new double[length];
+        return buffers[slot];
+    }
+
+    public static int[] ints(int slot, int length) {
+        if (length > MAX_RETAINED)
+            return new int[length];
+        int[][] buffers = INTS.get();
+        if (buffers[slot].length < length)
+            buffers[slot] = new int[length];
+        return buffers[slot];
+    }
+}
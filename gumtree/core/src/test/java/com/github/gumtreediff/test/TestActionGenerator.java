@@ -22,7 +22,10 @@ package com.github.gumtreediff.test;
 
 import com.github.gumtreediff.actions.ActionGenerator;
 import com.github.gumtreediff.actions.model.*;
+import com.github.gumtreediff.matchers.CompositeMatchers;
 import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.tree.CompactTree;
 import com.github.gumtreediff.tree.ITree;
 import com.github.gumtreediff.utils.Pair;
 import com.github.gumtreediff.tree.TreeContext;
@@ -31,6 +34,8 @@ import org.junit.Test;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class TestActionGenerator {
@@ -93,4 +98,85 @@ public class TestActionGenerator {
         System.out.println(actions);
     }
 
+    @Test
+    public void testSourceIsLeftUnchanged() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getActionPair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        MappingStore ms = new MappingStore();
+        ms.link(src, dst);
+        ms.link(src.getChild(1), dst.getChild(0));
+        ms.link(src.getChild(1).getChild(0), dst.getChild(0).getChild(0));
+        ms.link(src.getChild(1).getChild(1), dst.getChild(0).getChild(1));
+        ms.link(src.getChild(0), dst.getChild(1).getChild(0));
+        ms.link(src.getChild(0).getChild(0), dst.getChild(1).getChild(0).getChild(0));
+        ITree copy = src.deepCopy();
+        List<ITree> nodes = src.getTrees();
+
+        ActionGenerator ag = new ActionGenerator(src, dst, ms);
+        assertEquals(4, ag.generate().size());
+        assertEquals(4, ag.generate().size());
+
+        assertTrue(src.isIsomorphicTo(copy));
+        assertEquals(nodes, src.getTrees());
+        assertNull(src.getParent());
+        for (ITree t : src.getDescendants())
+            assertTrue(t.getParent().getChildren().contains(t));
+    }
+
+    @Test
+    public void testOnCompactTrees() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getGumtreePair();
+        Pair<TreeContext, TreeContext> compactTrees = TreeLoader.getGumtreePair();
+        compactTrees.getFirst().compact();
+        compactTrees.getSecond().compact();
+        List<Action> actions = actions(trees);
+        List<Action> compactActions = actions(compactTrees);
+        assertEquals(actions.size(), compactActions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            assertEquals(actions.get(i).getName(), compactActions.get(i).getName());
+            assertEquals(actions.get(i).getNode().getId(), compactActions.get(i).getNode().getId());
+        }
+        assertFalse(((CompactTree) compactTrees.getFirst().getRoot()).isEdited());
+    }
+
+    private static List<Action> actions(Pair<TreeContext, TreeContext> trees) {
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        Matcher m = new CompositeMatchers.ClassicGumtree(src, dst, new MappingStore());
+        m.match();
+        return new ActionGenerator(src, dst, m.getMappings()).generate();
+    }
+
+    @Test
+    public void testWithReorderedChildren() {
+        TreeContext srcCtx = new TreeContext();
+        ITree src = srcCtx.createTree(0, ITree.NO_LABEL, null);
+        for (String label : new String[] {"a", "b", "c", "d", "e", "f"})
+            src.addChild(srcCtx.createTree(1, label, null));
+        srcCtx.setRoot(src);
+        srcCtx.validate();
+        TreeContext dstCtx = new TreeContext();
+        ITree dst = dstCtx.createTree(0, ITree.NO_LABEL, null);
+        for (String label : new String[] {"b", "a", "c", "f", "d", "e"})
+            dst.addChild(dstCtx.createTree(1, label, null));
+        dstCtx.setRoot(dst);
+        dstCtx.validate();
+        MappingStore ms = new MappingStore();
+        ms.link(src, dst);
+        for (ITree s : src.getChildren())
+            for (ITree d : dst.getChildren())
+                if (s.getLabel().equals(d.getLabel()))
+                    ms.link(s, d);
+
+        List<Action> actions = new ActionGenerator(src, dst, ms).generate();
+
+        // a is moved rather than b, as with the tie breaking of the dynamic programming LCS.
+        assertEquals(2, actions.size());
+        assertTrue(actions.get(0) instanceof Move);
+        assertEquals("1@@a", actions.get(0).getNode().toShortString());
+        assertTrue(actions.get(1) instanceof Move);
+        assertEquals("1@@f", actions.get(1).getNode().toShortString());
+    }
+
 }
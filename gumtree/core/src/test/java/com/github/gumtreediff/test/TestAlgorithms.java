@@ -60,4 +60,29 @@ public class TestAlgorithms {
         assertThat(result[2], is(2));
     }
 
+    @Test
+    public void testHungarianAlgorithmFlatMatrix() {
+        double[] costs = new double[] {4D, 1D, 3D, 2D, 6D, 5D, 9D, 9D};
+        HungarianAlgorithm a = new HungarianAlgorithm(costs, 2, 3);
+        int[] result = a.execute();
+        assertThat(result.length, is(2));
+        assertThat(result[0], is(1));
+        assertThat(result[1], is(0));
+    }
+
+    @Test
+    public void testHungarianAlgorithmInPlace() {
+        double[] costs = new double[] {4D, 1D, 3D, 2D, 6D, 5D, 9D, 9D, 9D};
+        int[] result = new HungarianAlgorithm(costs, 3, 2).execute();
+        assertThat(result.length, is(3));
+        assertThat(result[0], is(1));
+        assertThat(result[1], is(0));
+        assertThat(result[2], is(-1));
+
+        costs = new double[] {4D, 1D, 3D, 2D, 6D, 5D, 9D, 9D, 9D};
+        result = new HungarianAlgorithm(costs, 2, 3).execute();
+        assertThat(result[0], is(1));
+        assertThat(result[1], is(0));
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+package com.github.gumtreediff.test;
+
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.matchers.heuristic.cd.ChangeDistillerLeavesMatcher;
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
+import org.junit.Test;
+import org.simmetrics.StringMetrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestChangeDistillerMatcher {
+
+    private static ITree leaves(TreeContext ctx, String... labels) {
+        ITree root = ctx.createTree(0, ITree.NO_LABEL, null);
+        for (String label : labels)
+            root.addChild(ctx.createTree(1, label, null));
+        ctx.setRoot(root);
+        ctx.validate();
+        return root;
+    }
+
+    @Test
+    public void testLeavesMatcher() {
+        ITree src = leaves(new TreeContext(), "getFoo", "count", "", "x", "foo");
+        ITree dst = leaves(new TreeContext(), "zzz", "counter", "getFooBar", "");
+        Matcher matcher = new ChangeDistillerLeavesMatcher(src, dst, new MappingStore());
+        matcher.match();
+        assertEquals(3, matcher.getMappingSet().size());
+        assertTrue(matcher.getMappings().has(src.getChild(0), dst.getChild(2)));
+        assertTrue(matcher.getMappings().has(src.getChild(1), dst.getChild(1)));
+        assertTrue(matcher.getMappings().has(src.getChild(2), dst.getChild(3)));
+    }
+
+    @Test
+    public void testSimilarityOfLabels() {
+        String[] labels = {"", "a", "ab", "abc", "abcd", "aaaa", "aaa", "##", "a#b", "getFoo", "getFooBar", "counter"};
+        for (String label1 : labels) {
+            for (String label2 : labels) {
+                ITree src = leaves(new TreeContext(), label1);
+                ITree dst = leaves(new TreeContext(), label2);
+                Matcher matcher = new ChangeDistillerLeavesMatcher(src, dst, new MappingStore());
+                matcher.match();
+                boolean similar = StringMetrics.qGramsDistance().compare(label1, label2)
+                        > ChangeDistillerLeavesMatcher.LABEL_SIM_THRESHOLD;
+                assertEquals(label1 + " / " + label2, similar,
+                        matcher.getMappings().has(src.getChild(0), dst.getChild(0)));
+            }
+        }
+    }
+
+}
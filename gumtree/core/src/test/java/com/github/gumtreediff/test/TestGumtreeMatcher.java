@@ -21,13 +21,22 @@
 package com.github.gumtreediff.test;
 
 import com.github.gumtreediff.matchers.CompositeMatchers;
+import com.github.gumtreediff.matchers.Mapping;
 import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.matchers.heuristic.gt.AbstractBottomUpMatcher;
+import com.github.gumtreediff.matchers.heuristic.gt.AbstractSubtreeMatcher;
+import com.github.gumtreediff.matchers.heuristic.gt.CliqueSubtreeMatcher;
 import com.github.gumtreediff.matchers.heuristic.gt.GreedySubtreeMatcher;
+import com.github.gumtreediff.matchers.heuristic.gt.HungarianSubtreeMatcher;
 import com.github.gumtreediff.utils.Pair;
+import com.github.gumtreediff.tree.ITree;
 import com.github.gumtreediff.tree.TreeContext;
 import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 import static org.junit.Assert.*;
 
 public class TestGumtreeMatcher {
@@ -66,4 +75,122 @@ public class TestGumtreeMatcher {
         assertEquals(6, m.getMappingSet().size());
     }
 
+    @Test
+    public void testHashCollisionsAreVerified() {
+        TreeContext ctx = new TreeContext();
+        ITree a = subtree(ctx, "a");
+        ITree b = subtree(ctx, "b");
+        ITree src = root(ctx, a, b);
+        ITree b2 = subtree(ctx, "b");
+        ITree a2 = subtree(ctx, "a");
+        ITree dst = root(ctx, b2, a2);
+        for (ITree t : new ITree[] {a, b, a2, b2})
+            t.setHash(42);
+
+        GreedySubtreeMatcher.MIN_HEIGHT = 1;
+        Matcher m = new GreedySubtreeMatcher(src, dst, new MappingStore());
+        m.match();
+        assertEquals(4, m.getMappingSet().size());
+        assertTrue(m.getMappingSet().contains(new Mapping(a, a2)));
+        assertTrue(m.getMappingSet().contains(new Mapping(b, b2)));
+        assertFalse(a.isIsomorphicTo(b2));
+    }
+
+    @Test
+    public void testDescendantSimilarities() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getGumtreePair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        GreedySubtreeMatcher.MIN_HEIGHT = 1;
+        Matcher m = new CompositeMatchers.ClassicGumtree(src, dst, new MappingStore());
+        m.match();
+
+        for (ITree s : src.getTrees()) {
+            for (ITree d : dst.getTrees()) {
+                Set<ITree> dstDescendants = new HashSet<>(d.getDescendants());
+                int common = 0;
+                for (ITree t : s.getDescendants())
+                    if (dstDescendants.contains(m.getMappings().getDst(t)))
+                        common++;
+                int ns = s.getDescendants().size();
+                int nd = d.getDescendants().size();
+                assertEquals((double) common / (ns + nd - common), m.jaccardSimilarity(s, d), 0D);
+                assertEquals(2D * common / (ns + nd), m.diceSimilarity(s, d), 0D);
+                assertEquals((double) common / Math.max(ns, nd), m.chawatheSimilarity(s, d), 0D);
+            }
+        }
+    }
+
+    @Test
+    public void testZsBudget() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getGumtreePair();
+        GreedySubtreeMatcher.MIN_HEIGHT = 0;
+        AbstractBottomUpMatcher.SIZE_THRESHOLD = 1000;
+        long budget = AbstractBottomUpMatcher.ZS_BUDGET;
+        try {
+            AbstractBottomUpMatcher.ZS_BUDGET = 0;
+            Matcher m = new CompositeMatchers.ClassicGumtree(
+                    trees.getFirst().getRoot(), trees.getSecond().getRoot(), new MappingStore());
+            m.match();
+            for (Mapping mapping : m.getMappingSet())
+                assertEquals(mapping.getFirst().getType(), mapping.getSecond().getType());
+            assertEquals(5, m.getMappingSet().size());
+        } finally {
+            AbstractBottomUpMatcher.ZS_BUDGET = budget;
+        }
+    }
+
+    @Test
+    public void testParallelAmbiguousGroups() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            TreeContext ctx = new TreeContext();
+            ITree src = blocks(ctx, random);
+            ITree dst = blocks(ctx, random);
+            GreedySubtreeMatcher.MIN_HEIGHT = 1;
+            int parallelism = AbstractSubtreeMatcher.PARALLELISM;
+            try {
+                AbstractSubtreeMatcher.PARALLELISM = 1;
+                Matcher hungarian = new HungarianSubtreeMatcher(src, dst, new MappingStore());
+                hungarian.match();
+                Matcher clique = new CliqueSubtreeMatcher(src, dst, new MappingStore());
+                clique.match();
+                AbstractSubtreeMatcher.PARALLELISM = 4;
+                Matcher parallelHungarian = new HungarianSubtreeMatcher(src, dst, new MappingStore());
+                parallelHungarian.match();
+                Matcher parallelClique = new CliqueSubtreeMatcher(src, dst, new MappingStore());
+                parallelClique.match();
+                assertEquals(hungarian.getMappingSet(), parallelHungarian.getMappingSet());
+                assertEquals(clique.getMappingSet(), parallelClique.getMappingSet());
+            } finally {
+                AbstractSubtreeMatcher.PARALLELISM = parallelism;
+            }
+        }
+    }
+
+    private static ITree blocks(TreeContext ctx, Random random) {
+        ITree root = ctx.createTree(0, ITree.NO_LABEL, "Root");
+        for (int i = 0; i < 6; i++) {
+            ITree block = ctx.createTree(3, ITree.NO_LABEL, "Body");
+            for (int j = random.nextInt(4); j >= 0; j--)
+                block.addChild(subtree(ctx, Character.toString((char) ('a' + random.nextInt(3)))));
+            root.addChild(block);
+        }
+        root.refresh();
+        return root;
+    }
+
+    private static ITree subtree(TreeContext ctx, String label) {
+        ITree t = ctx.createTree(1, label, "Block");
+        t.addChild(ctx.createTree(2, label, "Name"));
+        return t;
+    }
+
+    private static ITree root(TreeContext ctx, ITree... children) {
+        ITree root = ctx.createTree(0, ITree.NO_LABEL, "Root");
+        for (ITree c : children)
+            root.addChild(c);
+        root.refresh();
+        return root;
+    }
 }
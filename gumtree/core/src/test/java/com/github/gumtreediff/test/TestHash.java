@@ -21,12 +21,21 @@
 package com.github.gumtreediff.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.hash.Fingerprint;
+import com.github.gumtreediff.tree.hash.FingerprintHashGenerator;
+import com.github.gumtreediff.tree.hash.HashGenerator;
+import com.github.gumtreediff.tree.hash.HashUtils;
+import com.github.gumtreediff.tree.hash.Murmur3RollingHashGenerator;
 import com.github.gumtreediff.tree.hash.RollingHashGenerator;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class TestHash {
 
     ITree root;
@@ -47,4 +56,63 @@ public class TestHash {
         assertEquals(-295599963, root.getHash()); // for a
     }
 
+    @Test
+    public void testMurmur3RollingHash() {
+        assertEquals(0, collisions(new Murmur3RollingHashGenerator()));
+        assertEquals(0, collisions(new RollingHashGenerator.Md5RollingHashGenerator()));
+        assertEquals(Murmur3RollingHashGenerator.class, HashUtils.hashGenerator("murmur3").getClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownHashGenerator() {
+        HashUtils.hashGenerator("crc");
+    }
+
+    /**
+     * Hashes the subtrees of all the test trees and returns the number of distinct subtrees whose hash
+     * is already the hash of another subtree, checking that isomorphic subtrees share their hash.
+     */
+    private static int collisions(HashGenerator generator) {
+        Map<String, Integer> hashes = new HashMap<>();
+        Map<Integer, String> subtrees = new HashMap<>();
+        int collisions = 0;
+        for (String name : new String[] {"/Dummy_big.xml", "/Dummy_v0.xml", "/Dummy_v1.xml", "/action_v0.xml",
+                "/action_v1.xml", "/gumtree_v0.xml", "/gumtree_v1.xml", "/zs_slide_v0.xml", "/zs_slide_v1.xml",
+                "/zs_v0.xml", "/zs_v1.xml"}) {
+            ITree root = TreeLoader.load(name).getRoot();
+            generator.hash(root);
+            for (ITree t : root.getTrees()) {
+                String subtree = t.toStaticHashString();
+                Integer hash = hashes.putIfAbsent(subtree, t.getHash());
+                if (hash != null)
+                    assertEquals(hash.intValue(), t.getHash());
+                else if (subtrees.putIfAbsent(t.getHash(), subtree) != null)
+                    collisions++;
+            }
+        }
+        return collisions;
+    }
+
+    @Test
+    public void testFingerprint() {
+        ITree src = TreeLoader.getDummySrc();
+        ITree dst = TreeLoader.getDummyDst();
+        new FingerprintHashGenerator().hash(src);
+        new FingerprintHashGenerator().hash(dst);
+
+        Fingerprint a = FingerprintHashGenerator.getFingerprint(src);
+        assertEquals(a, FingerprintHashGenerator.fingerprint(src.deepCopy()));
+        assertEquals(a, Fingerprint.fromString(a.toString()));
+        assertEquals(32, a.toString().length());
+        assertNotEquals(a, FingerprintHashGenerator.getFingerprint(dst));
+        for (ITree s : src.getDescendants())
+            for (ITree d : dst.getDescendants())
+                assertEquals(s.toStaticHashString().equals(d.toStaticHashString()),
+                        FingerprintHashGenerator.getFingerprint(s).equals(FingerprintHashGenerator.getFingerprint(d)));
+
+        Fingerprint b = FingerprintHashGenerator.getFingerprint(dst);
+        assertNotEquals(Fingerprint.combine(a, b), Fingerprint.combine(b, a));
+        assertEquals(Fingerprint.combine(a, b), Fingerprint.combine(a, b));
+    }
+
 }
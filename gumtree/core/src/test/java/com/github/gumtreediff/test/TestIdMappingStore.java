@@ -0,0 +1,89 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+
+package com.github.gumtreediff.test;
+
+import com.github.gumtreediff.matchers.CompositeMatchers;
+import com.github.gumtreediff.matchers.IdMappingStore;
+import com.github.gumtreediff.matchers.Mapping;
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
+import com.github.gumtreediff.utils.Pair;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestIdMappingStore {
+
+    @Test
+    public void testLinks() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getDummyPair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        ITree a = src.getChild(0);
+        ITree b = dst.getChild(0);
+
+        IdMappingStore store = new IdMappingStore(src, dst);
+        store.link(src, dst);
+        store.link(a, b);
+        assertEquals(2, store.size());
+        assertSame(b, store.getDst(a));
+        assertSame(src, store.getSrc(dst));
+        assertTrue(store.has(a, b));
+        assertFalse(store.isMatchable(a, dst.getChild(1)));
+
+        MappingStore copy = store.copy();
+        copy.unlink(a, b);
+        assertFalse(copy.hasSrc(a));
+        assertFalse(copy.hasDst(b));
+        assertEquals(1, copy.size());
+        assertTrue(store.has(a, b));
+        assertEquals(2, store.size());
+
+        Set<Mapping> mappings = new HashSet<>();
+        store.forEachMapping((s, d) -> mappings.add(new Mapping(s, d)));
+        assertEquals(store.asSet(), mappings);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignNode() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getDummyPair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        new IdMappingStore(src, dst).link(src.deepCopy(), dst);
+    }
+
+    @Test
+    public void testSameMappingsAsMappingStore() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getGumtreePair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        Matcher m1 = new CompositeMatchers.ClassicGumtree(src, dst, new MappingStore());
+        m1.match();
+        Matcher m2 = new CompositeMatchers.ClassicGumtree(src, dst, new IdMappingStore(src, dst));
+        m2.match();
+        assertEquals(m1.getMappingSet(), m2.getMappingSet());
+    }
+}
@@ -20,15 +20,26 @@
 
 package com.github.gumtreediff.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
+import com.github.gumtreediff.tree.CompactTree;
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.LabelPool;
+import com.github.gumtreediff.tree.TreeContext;
 import com.github.gumtreediff.tree.TreeUtils;
+import com.github.gumtreediff.tree.hash.HashGenerator;
+import com.github.gumtreediff.tree.hash.HashUtils;
 
 public class TestTree {
 
@@ -55,6 +66,127 @@ public class TestTree {
         assertTrue(parents.get(1).getLabel().equals("a"));
     }
 
+    @Test
+    public void testCompactTree() {
+        TreeContext ctx = TreeLoader.load("/Dummy_big.xml");
+        ITree root = ctx.getRoot();
+        root.setMetadata("key", "value");
+        ctx.compact();
+        ITree compact = ctx.getRoot();
+        assertTrue(compact instanceof CompactTree);
+        assertEquals("value", compact.getMetadata("key"));
+        assertEquals(root.toStaticHashString(), compact.toStaticHashString());
+        assertEquals(root.getHash(), compact.getHash());
+
+        List<ITree> nodes = root.getTrees();
+        List<ITree> compactNodes = compact.getTrees();
+        assertEquals(nodes.size(), compactNodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            ITree t = nodes.get(i);
+            ITree c = compactNodes.get(i);
+            assertEquals(t.getId(), c.getId());
+            assertEquals(t.getSize(), c.getSize());
+            assertEquals(t.getHeight(), c.getHeight());
+            assertEquals(t.getDepth(), c.getDepth());
+            assertEquals(t.getPos(), c.getPos());
+            assertEquals(t.getLength(), c.getLength());
+            assertEquals(t.positionInParent(), c.positionInParent());
+            assertEquals(t.isLeaf(), c.isLeaf());
+            for (ITree child : c.getChildren())
+                assertSame(c, child.getParent());
+        }
+        assertNull(compact.getParent());
+    }
+
+    @Test
+    public void testCompactTreeEdits() {
+        CompactTree root = CompactTree.copyOf(TreeLoader.getDummySrc());
+        ITree b = root.getChild(0);
+        ITree e = root.getChild(1);
+        ITree c = b.getChild(0);
+        root.getChildren().remove(0);
+        e.addChild(b);
+        assertEquals(1, root.getChildren().size());
+        assertSame(e, b.getParent());
+        assertEquals(0, b.positionInParent());
+        assertSame(c, root.getChild(0).getChild(0).getChild(0));
+        assertTrue(root.isEdited());
+
+        e.getChildren().remove(b);
+        root.insertChild(b, 0);
+        assertTrue(e.isLeaf());
+        assertSame(root, b.getParent());
+        assertEquals(0, b.positionInParent());
+        assertEquals(TreeLoader.getDummySrc().toStaticHashString(), root.toStaticHashString());
+        assertFalse(root.isEdited());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCompactTreeLabels() {
+        CompactTree.copyOf(TreeLoader.getDummySrc()).setLabel("z");
+    }
+
+    @Test
+    public void testLabelPool() {
+        LabelPool pool = new LabelPool();
+        ITree a = new TreeContext(pool).createTree(0, new String("foo"), null);
+        ITree b = new TreeContext(pool).createTree(0, new String("foo"), null);
+        ITree c = new TreeContext().createTree(0, new String("foo"), null);
+        assertSame(a.getLabel(), b.getLabel());
+        assertNotSame(a.getLabel(), c.getLabel());
+        assertEquals(1, pool.size());
+        assertEquals(2D, pool.getDedupRatio(), 0D);
+        assertEquals(a.getLabelId(), b.getLabelId());
+        assertTrue(a.hasSameLabel(b));
+        assertTrue(a.hasSameLabel(c));
+
+        // the ids of two pools are not comparable
+        ITree d = new TreeContext().createTree(0, "bar", null);
+        assertEquals(c.getLabelId(), d.getLabelId());
+        assertFalse(c.hasSameLabel(d));
+        d.setLabel("foo");
+        assertEquals(ITree.NO_VALUE, d.getLabelId());
+        assertTrue(c.hasSameLabel(d));
+
+        // the label hashes of the pool are the ones of the labels
+        HashGenerator murmur3 = HashUtils.hashGenerator("murmur3");
+        for (ITree t : new ITree[] {a, c, d}) {
+            TreeUtils.computeSize(t);
+            murmur3.hash(t);
+        }
+        assertEquals(a.getHash(), c.getHash());
+        assertEquals(a.getHash(), d.getHash());
+
+        LabelPool.bind(pool);
+        try {
+            assertSame(pool, new TreeContext().getLabelPool());
+        } finally {
+            LabelPool.bind(null);
+        }
+        assertNotSame(pool, new TreeContext().getLabelPool());
+
+        int[] ids = IntStream.range(0, 10000).parallel().map(i -> pool.getId(Integer.toString(i % 1000))).toArray();
+        assertEquals(1001, pool.size());
+        for (int i = 0; i < ids.length; i++)
+            assertEquals(Integer.toString(i % 1000), pool.getLabel(ids[i]));
+    }
+
+    @Test
+    public void testLabelsAreInternedOnValidation() {
+        TreeContext ctx = new TreeContext();
+        ITree root = ctx.createTree(0, "a", null);
+        root.addChild(ctx.createTree(0, "b", null));
+        root.getChild(0).setLabel(new String("a"));
+        ctx.setRoot(root);
+        ctx.validate();
+        assertSame(root.getLabel(), root.getChild(0).getLabel());
+        assertEquals(root.getLabelId(), root.getChild(0).getLabelId());
+        // only the relabelled node is looked up again
+        assertEquals(3, ctx.getLabelPool().getLookups());
+        ctx.compact();
+        assertSame(ctx.getRoot().getLabel(), ctx.getRoot().getChild(0).getLabel());
+    }
+
     @Test
     public void testDeepCopy() {
         ITree root = TreeLoader.getDummySrc();
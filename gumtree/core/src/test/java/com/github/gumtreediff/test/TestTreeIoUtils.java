@@ -23,12 +23,19 @@ package com.github.gumtreediff.test;
 import com.github.gumtreediff.io.TreeIoUtils;
 import com.github.gumtreediff.tree.ITree;
 import com.github.gumtreediff.tree.TreeContext;
+import com.github.gumtreediff.tree.TreeContext.MetadataUnserializers;
 import org.junit.Test;
 
 import java.util.List;
 import java.util.ListIterator;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Base64;
 
 import static org.junit.Assert.*;
 
@@ -63,6 +70,81 @@ public class TestTreeIoUtils {
         assertTrue(ca.getLabel().equals("a"));
     }
 
+    @Test
+    public void testBinaryTree() throws Exception {
+        TreeContext tc = new TreeContext();
+        ITree a = tc.createTree(0, "a", "type0");
+        tc.setRoot(a);
+        ITree b = tc.createTree(1, "b", null);
+        b.setParentAndUpdateChildren(a);
+        b.setPos(4);
+        b.setLength(2);
+        ITree c = tc.createTree(-3, "\u00e9t\u00e9", null);
+        c.setParentAndUpdateChildren(b);
+        ITree d = tc.createTree(1, null, null);
+        d.setParentAndUpdateChildren(a);
+        c.setMetadata("key", 42);
+        tc.setMetadata("lang", "java");
+        tc.export("key", "lang");
+        tc.validate();
+
+        byte[] data = TreeIoUtils.toBinary(tc).toByteArray();
+        MetadataUnserializers unserializers = new MetadataUnserializers();
+        unserializers.add("key", Integer::parseInt);
+        unserializers.add("lang", s -> s);
+        TreeContext tca = TreeIoUtils.fromBinary(unserializers).read(new ByteArrayInputStream(data));
+        ITree ca = tca.getRoot();
+        assertTrue(a.isIsomorphicTo(ca));
+        assertEquals(a.getHash(), ca.getHash());
+        assertEquals(a.getId(), ca.getId());
+        assertEquals("type0", tca.getTypeLabel(ca));
+        assertEquals(4, ca.getChild(0).getPos());
+        assertEquals(2, ca.getChild(0).getLength());
+        assertEquals(ITree.NO_VALUE, ca.getPos());
+        assertEquals(42, ca.getChild(0).getChild(0).getMetadata("key"));
+        assertEquals("java", tca.getMetadata("lang"));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 1);
+        buffer.put((byte) 0).put(data).position(1);
+        assertTrue(a.isIsomorphicTo(TreeIoUtils.fromBinary().read(buffer).getRoot()));
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    public void testBinaryTreeFile() throws Exception {
+        TreeContext tc = TreeLoader.load("/Dummy_big.xml");
+        File file = File.createTempFile("gumtree", ".gtb");
+        file.deleteOnExit();
+        TreeIoUtils.toBinary(tc).writeTo(file);
+        TreeContext tca = TreeIoUtils.fromBinary().read(file);
+        assertTrue(tc.getRoot().isIsomorphicTo(tca.getRoot()));
+        assertEquals(tc.getRoot().getSize(), tca.getRoot().getSize());
+        assertEquals(tc.getRoot().getHash(), tca.getRoot().getHash());
+    }
+
+    @Test
+    public void testBinaryTreeAsText() throws Exception {
+        TreeContext tc = TreeLoader.load("/Dummy_v0.xml");
+        TreeIoUtils.TreeSerializer serializer = TreeIoUtils.toBinary(tc);
+        String text = serializer.toString();
+        StringWriter writer = new StringWriter();
+        serializer.writeTo(writer);
+        assertEquals(text, writer.toString());
+        TreeContext tca = TreeIoUtils.fromBinary().read(Base64.getDecoder().decode(text));
+        assertTrue(tc.getRoot().isIsomorphicTo(tca.getRoot()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidBinaryTree() throws Exception {
+        TreeIoUtils.fromBinary().read("<root/>".getBytes());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBinaryTree() throws Exception {
+        byte[] data = TreeIoUtils.toBinary(TreeLoader.load("/Dummy_v0.xml")).toByteArray();
+        TreeIoUtils.fromBinary().read(new ByteArrayInputStream(data, 0, data.length - 1));
+    }
+
     @Test
     public void testLoadBigTree() {
         ITree big = TreeLoader.getDummyBig();
@@ -22,13 +22,16 @@ package com.github.gumtreediff.test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Test;
 
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
 import com.github.gumtreediff.tree.TreeUtils;
+import com.github.gumtreediff.tree.hash.HashUtils;
 
 public class TestTreeUtils {
 
@@ -170,4 +173,63 @@ public class TestTreeUtils {
         Iterator<ITree> it = TreeUtils.breadthFirstIterator(big);
         compareListIterator(lst, it);
     }
+
+    @Test
+    public void testRefresh() {
+        ITree root = TreeLoader.getDummyBig();
+        ITree copy = root.deepCopy();
+        TreeUtils.computeSize(copy);
+        TreeUtils.computeDepth(copy);
+        TreeUtils.computeHeight(copy);
+        HashUtils.DEFAULT_HASH_GENERATOR.hash(copy);
+        TreeUtils.postOrderNumbering(copy);
+        TreeUtils.refresh(root, HashUtils.DEFAULT_HASH_GENERATOR, true);
+
+        List<ITree> nodes = root.getTrees();
+        List<ITree> copies = copy.getTrees();
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(copies.get(i).getSize(), nodes.get(i).getSize());
+            assertEquals(copies.get(i).getDepth(), nodes.get(i).getDepth());
+            assertEquals(copies.get(i).getHeight(), nodes.get(i).getHeight());
+            assertEquals(copies.get(i).getHash(), nodes.get(i).getHash());
+            assertEquals(copies.get(i).getId(), nodes.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testDeepTree() {
+        TreeContext ctx = new TreeContext();
+        ITree root = ctx.createTree(0, "a", null);
+        ITree leaf = root;
+        for (int i = 0; i < 100000; i++) {
+            ITree t = ctx.createTree(1, "b", null);
+            leaf.addChild(t);
+            leaf = t;
+        }
+        ctx.setRoot(root);
+        ctx.validate();
+        assertEquals(100001, root.getSize());
+        assertEquals(100000, root.getHeight());
+        assertEquals(100000, leaf.getDepth());
+        assertEquals(100000, root.getId());
+        assertEquals(100000, leaf.getParents().size());
+        assertEquals(100000, root.getDescendants().size());
+        assertEquals(leaf, TreeUtils.preOrder(root).get(100000));
+        assertEquals(leaf, TreeUtils.postOrder(root).get(0));
+        assertEquals(leaf, TreeUtils.breadthFirst(root).get(100000));
+        assertEquals(leaf, root.postOrder().iterator().next());
+        assertTrue(root.isIsomorphicTo(root.deepCopy()));
+        assertEquals(100001 * 8, root.toStaticHashString().length());
+    }
+
+    @Test
+    public void testLeafIterator() {
+        ITree root = TreeLoader.getDummySrc();
+        List<ITree> leaves = new ArrayList<>();
+        TreeUtils.leafIterator(root.preOrder().iterator()).forEachRemaining(leaves::add);
+        assertEquals(3, leaves.size());
+        assertEquals("c", leaves.get(0).getLabel());
+        assertEquals("d", leaves.get(1).getLabel());
+        assertEquals("e", leaves.get(2).getLabel());
+    }
 }
@@ -20,14 +20,19 @@
 
 package com.github.gumtreediff.test;
 
+import com.github.gumtreediff.matchers.Mapping;
 import com.github.gumtreediff.matchers.MappingStore;
 import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.matchers.optimal.zs.ZsMatcher;
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.PrunedTree;
 import com.github.gumtreediff.utils.Pair;
 import com.github.gumtreediff.tree.TreeContext;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -63,4 +68,53 @@ public class TestZsMatcher {
         assertTrue(matcher.getMappings().has(src.getChild(0).getChild(2), dst.getChild(2)));
     }
 
+    @Test
+    public void testWithPrunedTrees() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getZsCustomPair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        ITree prunedSrc = src.getChild(1).getChild(0);
+        ITree prunedDst = dst.getChild(0).getChild(0);
+        Matcher viewMatcher = new ZsMatcher(new PrunedTree(src, t -> t == prunedSrc),
+                new PrunedTree(dst, t -> t == prunedDst), new MappingStore());
+        viewMatcher.match();
+
+        ITree cSrc = src.deepCopy();
+        ITree cDst = dst.deepCopy();
+        cSrc.getChild(1).getChildren().remove(0);
+        cDst.getChild(0).getChildren().remove(0);
+        cSrc.refresh();
+        cDst.refresh();
+        Matcher copyMatcher = new ZsMatcher(cSrc, cDst, new MappingStore());
+        copyMatcher.match();
+
+        Set<String> expected = new HashSet<>();
+        for (Mapping m : copyMatcher.getMappings())
+            expected.add(m.getFirst().getId() + "->" + m.getSecond().getId());
+        Set<String> actual = new HashSet<>();
+        for (Mapping m : viewMatcher.getMappings()) {
+            assertTrue(m.getFirst() != prunedSrc && m.getSecond() != prunedDst);
+            actual.add(m.getFirst().getId() + "->" + m.getSecond().getId());
+        }
+        assertEquals(expected, actual);
+        assertEquals(6, src.getSize());
+    }
+
+    @Test
+    public void testWithBand() {
+        Pair<TreeContext, TreeContext> trees = TreeLoader.getZsSlidePair();
+        ITree src = trees.getFirst().getRoot();
+        ITree dst = trees.getSecond().getRoot();
+        Matcher unbounded = new ZsMatcher(src, dst, new MappingStore());
+        unbounded.match();
+        Matcher wide = new ZsMatcher(new PrunedTree(src), new PrunedTree(dst), new MappingStore(), 3);
+        wide.match();
+        assertEquals(unbounded.getMappingSet(), wide.getMappingSet());
+
+        Matcher narrow = new ZsMatcher(new PrunedTree(src), new PrunedTree(dst), new MappingStore(), 0);
+        narrow.match();
+        assertTrue(narrow.getMappings().has(src, dst));
+        for (Mapping m : narrow.getMappings())
+            assertEquals(m.getFirst().getId(), m.getSecond().getId());
+    }
 }
@@ -26,25 +26,74 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 
 public abstract class AbstractJdtTreeGenerator extends TreeGenerator {
 
-    private static char[] readerToCharArray(Reader r) throws IOException {
-        StringBuilder fileData = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(r)) {
-            char[] buf = new char[10];
-            int numRead = 0;
-            while ((numRead = br.read(buf)) != -1) {
-                String readData = String.valueOf(buf, 0, numRead);
-                fileData.append(readData);
-                buf = new char[1024];
+    private static final Map<String, String> COMPILER_OPTIONS = createCompilerOptions();
+
+    private static final ThreadLocal<ASTParser> PARSERS = ThreadLocal.withInitial(() -> ASTParser.newParser(AST.JLS8));
+
+    private static Map<String, String> createCompilerOptions() {
+        Map<String, String> pOptions = JavaCore.getOptions();
+        pOptions.put(JavaCore.COMPILER_COMPLIANCE, JavaCore.VERSION_1_8);
+        pOptions.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JavaCore.VERSION_1_8);
+        pOptions.put(JavaCore.COMPILER_SOURCE, JavaCore.VERSION_1_8);
+        pOptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
+        return Collections.unmodifiableMap(pOptions);
+    }
+
+    /**
+     * Returns the parser of the calling thread set up for Java 8 sources of the given kind. The
+     * compiler options are computed once, and as ASTParser returns to its default settings after
+     * each createAST, they are applied again on every call.
+     */
+    public static ASTParser getParser(int astParserType) {
+        ASTParser parser = PARSERS.get();
+        parser.setKind(astParserType);
+        parser.setCompilerOptions(COMPILER_OPTIONS);
+        return parser;
+    }
+
+    public static char[] readerToCharArray(Reader r) throws IOException {
+        char[] buf = new char[8192];
+        int length = 0;
+        try (Reader reader = r) {
+            int numRead;
+            while ((numRead = reader.read(buf, length, buf.length - length)) != -1) {
+                length += numRead;
+                if (length == buf.length)
+                    buf = Arrays.copyOf(buf, buf.length * 2);
             }
         }
-        return  fileData.toString().toCharArray();
+        return Arrays.copyOf(buf, length);
+    }
+
+    /**
+     * Decodes a file with the default charset, like a FileReader, straight into the char array
+     * handed to the parser.
+     */
+    public static char[] fileToCharArray(Path path) throws IOException {
+        CharBuffer chars = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+        if (chars.hasArray() && chars.arrayOffset() == 0 && chars.remaining() == chars.array().length)
+            return chars.array();
+        char[] source = new char[chars.remaining()];
+        chars.get(source);
+        return source;
     }
 
     @Override
@@ -54,19 +103,38 @@ public abstract class AbstractJdtTreeGenerator extends TreeGenerator {
     
     @Override
     public TreeContext generate(Reader r, int astParserType) throws IOException {
-        ASTParser parser = ASTParser.newParser(AST.JLS8);
-        parser.setKind(astParserType);
-        Map<String, String> pOptions = JavaCore.getOptions();
-        pOptions.put(JavaCore.COMPILER_COMPLIANCE, JavaCore.VERSION_1_8);
-        pOptions.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JavaCore.VERSION_1_8);
-        pOptions.put(JavaCore.COMPILER_SOURCE, JavaCore.VERSION_1_8);
-        pOptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
-        parser.setCompilerOptions(pOptions);
-        parser.setSource(readerToCharArray(r));
+        return generate(readerToCharArray(r), astParserType);
+    }
+
+    public TreeContext generate(char[] source, int astParserType) {
+        ASTParser parser = getParser(astParserType);
+        parser.setSource(source);
         AbstractJdtVisitor v = createVisitor();
         parser.createAST(null).accept(v);
         return v.getTreeContext();
     }
 
+    @Override
+    public TreeContext generateFromFile(String path) throws IOException {
+        return generateFromFile(new File(path), ASTParser.K_COMPILATION_UNIT);
+    }
+
+    @Override
+    public TreeContext generateFromFile(File file) throws IOException {
+        return generateFromFile(file, ASTParser.K_COMPILATION_UNIT);
+    }
+
+    @Override
+    public TreeContext generateFromFile(String path, int astParserType) throws IOException {
+        return generateFromFile(new File(path), astParserType);
+    }
+
+    @Override
+    public TreeContext generateFromFile(File file, int astParserType) throws IOException {
+        TreeContext ctx = generate(fileToCharArray(file.toPath()), astParserType);
+        validate(ctx);
+        return ctx;
+    }
+
     protected abstract AbstractJdtVisitor createVisitor();
 }
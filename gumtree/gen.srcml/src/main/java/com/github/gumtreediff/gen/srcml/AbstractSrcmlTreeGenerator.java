@@ -27,6 +27,8 @@ import com.github.gumtreediff.tree.TreeContext;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
@@ -41,6 +43,11 @@ import java.util.stream.Collectors;
 
 public abstract class AbstractSrcmlTreeGenerator extends TreeGenerator {
 
+    /**
+     * Number of files passed to a single srcml process by generateFromFiles.
+     */
+    public static final int BATCH_SIZE = 256;
+
 
 
 
@@ -70,8 +77,7 @@ public abstract class AbstractSrcmlTreeGenerator extends TreeGenerator {
     @Override
     public TreeContext generate(Reader r) throws IOException {
         lr = new LineReader(r);
-        String xml = readStandardOutput(lr);
-        return getTreeContext(xml);
+        return parse(lr);
     }
 
     public static <T, E> List<T> getKeysByValue(Map<T, E> map, E value) {
@@ -83,90 +89,103 @@ public abstract class AbstractSrcmlTreeGenerator extends TreeGenerator {
     }
 
     public TreeContext getTreeContext(String xml) {
-        XMLInputFactory fact = XMLInputFactory.newInstance();
+        try {
+            return buildTree(createEventReader(new StringReader(xml)));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Builds the tree of the srcML unit starting at the next start element of the reader, resolving
+     * the positions against lr. The events are consumed up to the end of that unit only, so the units
+     * of an archive can be built one after the other from the same reader.
+     */
+    protected TreeContext buildTree(XMLEventReader r) throws XMLStreamException {
         context = new TreeContext();
         currentLabel = new StringBuilder();
         boolean isBlock = false;
-        try {
-            ArrayDeque<ITree> trees = new ArrayDeque<>();
-            XMLEventReader r = fact.createXMLEventReader(new StringReader(xml));
-            while (r.hasNext()) {
-                XMLEvent ev = r.nextEvent();
-
-                if (ev.isStartElement()) {
-                    StartElement s = ev.asStartElement();
-                    String typeLabel = s.getName().getLocalPart();
-                    String prefix = s.getName().getPrefix();
-                    if(removeType.contains(typeLabel) || isBlock){
-                        if(s.getName().getLocalPart().equals("comment") && s.getAttributeByName(COMMENT_BLOCK).getValue().equals("block")){
-                            isBlock = true;
-                        }
-                        continue;
+        ArrayDeque<ITree> trees = new ArrayDeque<>();
+        while (r.hasNext()) {
+            XMLEvent ev = r.nextEvent();
+
+            if (ev.isStartElement()) {
+                StartElement s = ev.asStartElement();
+                String typeLabel = s.getName().getLocalPart();
+                String prefix = s.getName().getPrefix();
+                if(removeType.contains(typeLabel) || isBlock){
+                    if(s.getName().getLocalPart().equals("comment") && s.getAttributeByName(COMMENT_BLOCK).getValue().equals("block")){
+                        isBlock = true;
                     }
+                    continue;
+                }
 
-                    if (typeLabel.equals("position"))
+                if (typeLabel.equals("position"))
 //                    Type type = type(s.getName().getLocalPart());
 //                    if (type.equals(position))
-                        setLength(trees.peekFirst(), s);
-                    else {
-                        if (prefix.equals("cpp") && (typeLabel.equals("if") || typeLabel.equals("else"))){
-                            typeLabel = prefix + ":"+typeLabel;
-                        }
+                    setLength(trees.peekFirst(), s);
+                else {
+                    if (prefix.equals("cpp") && (typeLabel.equals("if") || typeLabel.equals("else"))){
+                        typeLabel = prefix + ":"+typeLabel;
+                    }
 
-                        if(typeLabel.equals("literal")){
-                            if(s.getAttributeByName(COMMENT_BLOCK) != null){
-                                String value = s.getAttributeByName(COMMENT_BLOCK).getValue();
-                                typeLabel = typeLabel + ":"+value;
-                            }
+                    if(typeLabel.equals("literal")){
+                        if(s.getAttributeByName(COMMENT_BLOCK) != null){
+                            String value = s.getAttributeByName(COMMENT_BLOCK).getValue();
+                            typeLabel = typeLabel + ":"+value;
                         }
-                        List<Integer> keysByValue = getKeysByValue(NodeMap_new.map, typeLabel);
-                        if(keysByValue == null || keysByValue.size() ==0){
-                            System.out.println(typeLabel);
-                        }
-                        int type = keysByValue.get(0);
+                    }
+                    int type = NodeMap_new.getType(typeLabel);
 
-                        ITree t = context.createTree(type, "", typeLabel);
+                    ITree t = context.createTree(type, "", typeLabel);
 
 
-                        if (trees.isEmpty()) {
-                            context.setRoot(t);
-                            t.setPos(0);
-                        } else {
-                            t.setParentAndUpdateChildren(trees.peekFirst());
-                            setPos(t, s);
-                        }
-                        trees.addFirst(t);
-                    }
-                } else if (ev.isEndElement()) {
-                    EndElement end = ev.asEndElement();
-                    if(removeType.contains(end.getName().getLocalPart() ) ){
-                        if(end.getName().getLocalPart().equals("comment") && isBlock){
-                            isBlock = false;
-                        }
-                        continue;
+                    if (trees.isEmpty()) {
+                        context.setRoot(t);
+                        t.setPos(0);
+                    } else {
+                        t.setParentAndUpdateChildren(trees.peekFirst());
+                        setPos(t, s);
                     }
-                    if (!end.getName().getLocalPart().equals("position") && !isBlock){
-                        if (isLabeled(trees)){
-                            trees.peekFirst().setLabel(currentLabel.toString());
-                        }
-                        trees.removeFirst();
-                        currentLabel = new StringBuilder();
+                    trees.addFirst(t);
+                }
+            } else if (ev.isEndElement()) {
+                EndElement end = ev.asEndElement();
+                if(removeType.contains(end.getName().getLocalPart() ) ){
+                    if(end.getName().getLocalPart().equals("comment") && isBlock){
+                        isBlock = false;
                     }
-                } else if (ev.isCharacters() && !isBlock) {
-                    Characters chars = ev.asCharacters();
-                    if(chars.getData().trim().startsWith("\"This module provides access to some")){
-                        chars.getData();
+                    continue;
+                }
+                if (!end.getName().getLocalPart().equals("position") && !isBlock){
+                    if (isLabeled(trees)){
+                        trees.peekFirst().setLabel(currentLabel.toString());
                     }
-                    if (!chars.isWhiteSpace() && isLabeled(trees))
-                        currentLabel.append(chars.getData().replace("\n",""));
+                    trees.removeFirst();
+                    currentLabel = new StringBuilder();
+                    if (trees.isEmpty())
+                        break;
                 }
+            } else if (ev.isCharacters() && !isBlock) {
+                Characters chars = ev.asCharacters();
+                if(chars.getData().trim().startsWith("\"This module provides access to some")){
+                    chars.getData();
+                }
+                if (!chars.isWhiteSpace() && isLabeled(trees))
+                    currentLabel.append(chars.getData().replace("\n",""));
             }
-            fixPos(context);
-            return context; //TODO check way validate is removed
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return null;
+        fixPos(context);
+        return context; //TODO check way validate is removed
+    }
+
+    /**
+     * Returns an event reader on srcML output that drops the empty expr_stmt and pseudo else
+     * elements.
+     */
+    protected static XMLEventReader createEventReader(Reader xml) throws XMLStreamException {
+        return new PseudoElementFilter(XMLInputFactory.newInstance().createXMLEventReader(xml));
     }
 
     private boolean isLabeled(ArrayDeque<ITree> trees) {
@@ -331,41 +350,6 @@ public abstract class AbstractSrcmlTreeGenerator extends TreeGenerator {
 //        }
     }
 
-    public String getXml(Reader r) throws IOException {
-        //FIXME this is not efficient but I am not sure how to speed up things here.
-        File f = File.createTempFile("gumtree", "");
-        FileWriter w = new FileWriter(f);
-        BufferedReader br = new BufferedReader(r);
-        String line = br.readLine();
-        while (line != null) {
-            w.append(line);
-            w.append(System.lineSeparator());
-            line = br.readLine();
-        }
-        w.close();
-        br.close();
-        ProcessBuilder b = new ProcessBuilder(getArguments(f.getAbsolutePath()));
-        b.directory(f.getParentFile());
-        try {
-            Process p = b.start();
-            StringBuffer buf = new StringBuffer();
-            br = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            // TODO Why do we need to read and bufferize everything, when we could/should only use generateFromStream
-            line = null;
-            while ((line = br.readLine()) != null)
-                buf.append(line + "\n");
-            p.waitFor();
-            if (p.exitValue() != 0) throw new RuntimeException();
-            r.close();
-            String xml = buf.toString();
-            return xml;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            f.delete();
-        }
-    }
-
     public abstract String getLanguage();
 
 
@@ -385,40 +369,117 @@ public abstract class AbstractSrcmlTreeGenerator extends TreeGenerator {
     public String[] getArguments(String file) {
         return new String[]{getSRCML_CMD(), "-l", getLanguage(), "--position", file, "--tabs=1"};
     }
-    public String readStandardOutput(Reader r) throws IOException {
+
+    /**
+     * Parses several files with a single srcml process per BATCH_SIZE files. The files are read in
+     * place and the srcML archive is streamed from the standard output of srcml to the tree
+     * builder unit by unit, instead of forking srcml on a temporary copy of each file.
+     *
+     * @return the validated tree contexts keyed by file, in the order of the files
+     */
+    public Map<File, TreeContext> generateFromFiles(List<File> files) throws IOException {
+        Map<File, TreeContext> contexts = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i += BATCH_SIZE) {
+            List<File> batch = files.subList(i, Math.min(files.size(), i + BATCH_SIZE));
+            List<String> args = new ArrayList<>(Arrays.asList(getSRCML_CMD(), "-l", getLanguage(),
+                    "--position", "--tabs=1", "--archive"));
+            for (File f : batch)
+                args.add(f.getAbsolutePath());
+            Process p = new ProcessBuilder(args).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            try (Reader out = new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8)) {
+                contexts.putAll(readArchive(out, batch));
+                if (p.waitFor() != 0)
+                    throw new IOException("srcml exited with " + p.exitValue());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                p.destroy();
+            }
+        }
+        return contexts;
+    }
+
+    /**
+     * Builds the trees of the units of a srcML archive of the given files. A unit is matched to its
+     * file by its filename attribute, or by its rank in the archive when srcml did not record it.
+     */
+    protected Map<File, TreeContext> readArchive(Reader xml, List<File> files) throws IOException {
+        Map<String, File> byName = new HashMap<>();
+        for (File f : files)
+            byName.put(f.getAbsolutePath(), f);
+        Map<File, TreeContext> contexts = new LinkedHashMap<>();
+        try {
+            XMLEventReader r = createEventReader(xml);
+            // the archive unit
+            while (r.hasNext() && !r.nextEvent().isStartElement());
+            int rank = 0;
+            while (r.hasNext()) {
+                XMLEvent ev = r.peek();
+                if (!ev.isStartElement() || !ev.asStartElement().getName().getLocalPart().equals("unit")) {
+                    r.nextEvent();
+                    continue;
+                }
+                Attribute filename = ev.asStartElement().getAttributeByName(new QName("filename"));
+                File f = filename != null && byName.containsKey(filename.getValue())
+                        ? byName.get(filename.getValue()) : files.get(rank);
+                rank++;
+                lr = readLines(f);
+                TreeContext ctx = buildTree(r);
+                validate(ctx);
+                contexts.put(f, ctx);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return contexts;
+    }
+
+    /**
+     * Reads a file through a LineReader to index its lines.
+     */
+    private static LineReader readLines(File f) throws IOException {
+        LineReader lines = new LineReader(new FileReader(f));
+        try {
+            char[] buf = new char[8192];
+            while (lines.read(buf) >= 0);
+        } finally {
+            lines.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Runs srcml on the content of the reader and builds the tree from its standard output as srcml
+     * writes it, so that the XML output is never held in memory.
+     *
+     * @return the tree context, or null when the output of srcml could not be parsed
+     */
+    protected TreeContext parse(Reader r) throws IOException {
         // TODO avoid recreating file if supplied reader is already a file
         File f = dumpReaderInTempFile(r);
         ProcessBuilder b = new ProcessBuilder(getCommandLine(f.getAbsolutePath()));
         b.directory(f.getParentFile());
+        b.redirectError(ProcessBuilder.Redirect.INHERIT);
         Process p = b.start();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder buf = new StringBuilder();
-            String line = null;
-            while ((line = br.readLine()) != null){
-
-////                String e = "<else pos:line=\"[0-9]+\" pos:column=\"[0-9]+\">else\\W*<block type=\"pseudo\"><empty_stmt pos:line=\"[0-9]+\" pos:column=\"[0-9]+\">;<pos:position pos:line=\"[0-9]+\" pos:column=\"[0-9]+\"/></empty_stmt></block></else>";
-//                String e = "<else pos:line=\\\\\\\"[0-9]+\\\\\\\" pos:column=\\\\\\\"[0-9]+\\\\\\\">else\\\\W*<block type=\\\\\\\"pseudo\\\\\\\"><empty_stmt pos:line=\\\\\\\"[0-9]+\\\\\\\" pos:column=\\\\\\\"[0-9]+\\\\\\\">;<pos:position pos:line=\\\\\\\"[0-9]+\\\\\\\" pos:column=\\\\\\\"[0-9]+\\\\\\\"/></empty_stmt></block></else>";
-//                //<else pos:line="37" pos:column="4">else <block type="pseudo"><empty_stmt pos:line="37" pos:column="9">;<pos:position pos:line="37" pos:column="10"/></empty_stmt></block></else></if>
-//                line = line.replaceAll(e,"");
-//                String s = "<expr_stmt><pos:position pos:line=\"[0-9]+\" pos:column=\"[0-9]+\"/></expr_stmt>";
-//                line = line.replaceAll(s,"");
-                buf.append(line + System.lineSeparator());
+        try (Reader out = new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8)) {
+            TreeContext ctx = null;
+            try {
+                ctx = buildTree(createEventReader(out));
+            } catch (Exception e) {
+                e.printStackTrace();
             }
+            // let srcml write the rest of its output, if any, before checking its exit value
+            char[] buf = new char[8192];
+            while (out.read(buf) >= 0);
             p.waitFor();
             if (p.exitValue() != 0)
-                throw new RuntimeException(buf.toString());
+                throw new RuntimeException("srcml exited with " + p.exitValue());
             r.close();
-            p.destroy();
-            String s = buf.toString();
-            String p1 = "<expr_stmt><pos:position pos:line=\"[0-9]+\" pos:column=\"[0-9]+\"/></expr_stmt>";
-            String p2 = "<else pos:line=\"[0-9]+\" pos:column=\"[0-9]+\">else\\W*<block type=\"pseudo\"><empty_stmt pos:line=\"[0-9]+\" pos:column=\"[0-9]+\">;<pos:position pos:line=\"[0-9]+\" pos:column=\"[0-9]+\"/></empty_stmt></block></else>";
-            s = s.replaceAll(p2,"");
-            s = s.replaceAll(p1,"");
-            return s;
+            return ctx;
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
+            p.destroy();
             f.delete();
         }
     }
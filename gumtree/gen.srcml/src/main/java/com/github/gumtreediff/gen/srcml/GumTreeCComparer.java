@@ -5,11 +5,13 @@ import com.github.gumtreediff.actions.model.Action;
 import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.matchers.Matchers;
 import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.github.gumtreediff.tree.TreeUtils;
@@ -27,8 +29,10 @@ public class GumTreeCComparer {
         try {
 //			oldTree = new GumTreeGenerator().generateITreeForCFileForCode(prevFile);
 //			newTree = new GumTreeGenerator().generateITreeForCFileForCode(revFile);
-			oldTree = new SrcmlCTreeGenerator(srcmlPath).generateFromFile(prevFile).getRoot();
-			newTree = new SrcmlCTreeGenerator(srcmlPath).generateFromFile(revFile).getRoot();
+			// both revisions are parsed by a single srcml process
+			Map<File, TreeContext> contexts = new SrcmlCTreeGenerator(srcmlPath).generateFromFiles(Arrays.asList(prevFile, revFile));
+			oldTree = contexts.get(prevFile).getRoot();
+			newTree = contexts.get(revFile).getRoot();
         } catch (Exception e) {
             if (oldTree == null) {
                 log.info("Null GumTree of Previous File: " + prevFile.getPath());
@@ -1,9 +1,11 @@
 package com.github.gumtreediff.gen.srcml;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class NodeMap_new {
@@ -587,6 +589,41 @@ public class NodeMap_new {
 //
 //    }
 
+    private static final Map<String, Integer> types = reverse(map);
+
+    private static final Set<String> statements = reverse(StatementMap).keySet();
+
+    /**
+     * Returns the id of a srcML node type name.
+     *
+     * @throws IllegalArgumentException if the name is not in map
+     */
+    public static int getType(String name) {
+        Integer type = types.get(name);
+        if (type == null)
+            throw new IllegalArgumentException("unknown node type " + name);
+        return type;
+    }
+
+    public static boolean isStatement(String name) {
+        return statements.contains(name);
+    }
+
+    /**
+     * Builds the immutable name to id table of a node map, failing when a name is mapped to several
+     * ids so that an ambiguous map is detected when the class is loaded.
+     */
+    public static Map<String, Integer> reverse(Map<Integer, String> map) {
+        Map<String, Integer> reversed = new HashMap<>(map.size() * 2);
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            Integer previous = reversed.put(entry.getValue(), entry.getKey());
+            if (previous != null)
+                throw new IllegalStateException(String.format("%s is mapped to both %d and %d",
+                        entry.getValue(), previous, entry.getKey()));
+        }
+        return Collections.unmodifiableMap(reversed);
+    }
+
     public static <T, E> List<T> getKeysByValue(Map<T, E> map, E value) {
         return map.entrySet()
                 .stream()
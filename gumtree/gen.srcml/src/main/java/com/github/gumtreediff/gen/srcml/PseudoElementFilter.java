@@ -0,0 +1,227 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+package com.github.gumtreediff.gen.srcml;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.EventReaderDelegate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * Drops from srcML output the elements that used to be removed from the XML text by regular
+ * expressions, with the same attribute constraints:
+ * <ul>
+ *   <li>an expr_stmt holding nothing but a pos:position,
+ *   <li>an else holding nothing but a pseudo block around an empty_stmt.
+ * </ul>
+ * The events of a candidate element are buffered until it either matches and is dropped as a
+ * whole, or diverges and is passed through unchanged.
+ */
+class PseudoElementFilter extends EventReaderDelegate {
+
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+
+    private static final Pattern ELSE_TEXT = Pattern.compile("else\\W*");
+
+    private final ArrayDeque<XMLEvent> pending = new ArrayDeque<>();
+
+    private XMLEvent pushedBack;
+
+    PseudoElementFilter(XMLEventReader reader) {
+        super(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !pending.isEmpty() || pushedBack != null || super.hasNext();
+    }
+
+    @Override
+    public XMLEvent nextEvent() throws XMLStreamException {
+        fill();
+        if (pending.isEmpty())
+            throw new NoSuchElementException();
+        return pending.removeFirst();
+    }
+
+    @Override
+    public Object next() {
+        try {
+            return nextEvent();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public XMLEvent peek() throws XMLStreamException {
+        fill();
+        return pending.peekFirst();
+    }
+
+    private void fill() throws XMLStreamException {
+        while (pending.isEmpty()) {
+            XMLEvent ev = read();
+            if (ev == null)
+                return;
+            List<XMLEvent> buffer = new ArrayList<>();
+            buffer.add(ev);
+            boolean matched;
+            if (isStart(ev, "expr_stmt") && attributeCount(ev.asStartElement()) == 0)
+                matched = matchEmptyExprStmt(buffer);
+            else if (isStart(ev, "else") && hasPositionOnly(ev))
+                matched = matchPseudoElse(buffer);
+            else {
+                pending.add(ev);
+                continue;
+            }
+            if (matched)
+                continue;
+            // the event on which the match failed may start a candidate itself
+            XMLEvent last = buffer.get(buffer.size() - 1);
+            if (buffer.size() > 1 && last != null) {
+                pushedBack = last;
+                buffer.remove(buffer.size() - 1);
+            }
+            for (XMLEvent e : buffer)
+                if (e != null)
+                    pending.add(e);
+        }
+    }
+
+    /**
+     * Matches the rest of expr_stmt&gt;pos:position/&gt;/expr_stmt.
+     */
+    private boolean matchEmptyExprStmt(List<XMLEvent> buffer) throws XMLStreamException {
+        return isPosition(take(buffer))
+                && isEnd(take(buffer), "position")
+                && isEnd(take(buffer), "expr_stmt");
+    }
+
+    /**
+     * Matches the rest of else&gt;else block type="pseudo"&gt;empty_stmt&gt;;pos:position/&gt;
+     * /empty_stmt&gt;/block&gt;/else&gt;.
+     */
+    private boolean matchPseudoElse(List<XMLEvent> buffer) throws XMLStreamException {
+        if (!ELSE_TEXT.matcher(takeText(buffer)).matches())
+            return false;
+        XMLEvent block = buffer.get(buffer.size() - 1);
+        if (!isStart(block, "block") || attributeCount(block.asStartElement()) != 1
+                || !"pseudo".equals(attributeValue(block.asStartElement(), "type")))
+            return false;
+        XMLEvent empty = take(buffer);
+        if (!isStart(empty, "empty_stmt") || !hasPositionOnly(empty))
+            return false;
+        if (!takeText(buffer).equals(";") || !isPosition(buffer.get(buffer.size() - 1)))
+            return false;
+        return isEnd(take(buffer), "position")
+                && isEnd(take(buffer), "empty_stmt")
+                && isEnd(take(buffer), "block")
+                && isEnd(take(buffer), "else");
+    }
+
+    private XMLEvent read() throws XMLStreamException {
+        if (pushedBack != null) {
+            XMLEvent ev = pushedBack;
+            pushedBack = null;
+            return ev;
+        }
+        return super.hasNext() ? super.nextEvent() : null;
+    }
+
+    private XMLEvent take(List<XMLEvent> buffer) throws XMLStreamException {
+        XMLEvent ev = read();
+        buffer.add(ev);
+        return ev;
+    }
+
+    /**
+     * Reads the consecutive character events and the event following them into the buffer.
+     *
+     * @return the concatenated text
+     */
+    private String takeText(List<XMLEvent> buffer) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        XMLEvent ev = take(buffer);
+        while (ev != null && ev.isCharacters()) {
+            text.append(ev.asCharacters().getData());
+            ev = take(buffer);
+        }
+        return text.toString();
+    }
+
+    private static boolean isStart(XMLEvent ev, String name) {
+        return ev != null && ev.isStartElement() && ev.asStartElement().getName().getLocalPart().equals(name);
+    }
+
+    private static boolean isEnd(XMLEvent ev, String name) {
+        return ev != null && ev.isEndElement() && ev.asEndElement().getName().getLocalPart().equals(name);
+    }
+
+    private static boolean isPosition(XMLEvent ev) {
+        return isStart(ev, "position") && "pos".equals(ev.asStartElement().getName().getPrefix())
+                && hasPositionOnly(ev);
+    }
+
+    /**
+     * Returns true when the only attributes of the element are a numeric pos:line and pos:column.
+     */
+    private static boolean hasPositionOnly(XMLEvent ev) {
+        boolean line = false;
+        boolean column = false;
+        for (Iterator<?> it = ev.asStartElement().getAttributes(); it.hasNext();) {
+            Attribute a = (Attribute) it.next();
+            if (!"pos".equals(a.getName().getPrefix()) || !NUMBER.matcher(a.getValue()).matches())
+                return false;
+            String name = a.getName().getLocalPart();
+            if (name.equals("line") && !line)
+                line = true;
+            else if (name.equals("column") && !column)
+                column = true;
+            else
+                return false;
+        }
+        return line && column;
+    }
+
+    private static int attributeCount(StartElement s) {
+        int count = 0;
+        for (Iterator<?> it = s.getAttributes(); it.hasNext(); it.next())
+            count++;
+        return count;
+    }
+
+    private static String attributeValue(StartElement s, String name) {
+        for (Iterator<?> it = s.getAttributes(); it.hasNext();) {
+            Attribute a = (Attribute) it.next();
+            if (a.getName().getLocalPart().equals(name))
+                return a.getValue();
+        }
+        return null;
+    }
+}
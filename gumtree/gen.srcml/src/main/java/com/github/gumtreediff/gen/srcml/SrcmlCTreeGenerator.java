@@ -49,9 +49,6 @@ public class SrcmlCTreeGenerator extends AbstractSrcmlTreeGenerator {
 
     @Override
     protected TreeContext generate(Reader r, int astParserType) throws IOException {
-            LineReader lr;
-            lr = new LineReader(r);
-            String xml = getXml(lr);
-            return getTreeContext(xml);
+        return generate(r);
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * This file is part of GumTree.
+ *
+ * GumTree is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GumTree is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GumTree.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Jean-Rémy Falleri <jr.falleri@gmail.com>
+ */
+
+
+package com.github.gumtreediff.gen.srcml;
+
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+public class TestSrcmlStreaming {
+
+    private static final String UNIT = "<unit xmlns=\"http://www.srcML.org/srcML/src\" "
+            + "xmlns:pos=\"http://www.srcML.org/srcML/position\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String decl(int line, String var) {
+        String p = line + ":";
+        return "<decl_stmt pos:start=\"" + p + "1\"><decl pos:start=\"" + p + "1\"><type pos:start=\"" + p + "1\">"
+                + "<name pos:start=\"" + p + "1\">int</name></type> <name pos:start=\"" + p + "5\">" + var + "</name>"
+                + "</decl>;</decl_stmt>";
+    }
+
+    private static int count(TreeContext ctx, String typeLabel) {
+        int count = 0;
+        for (ITree t : ctx.getRoot().preOrder())
+            if (ctx.getTypeLabel(t.getType()).equals(typeLabel))
+                count++;
+        return count;
+    }
+
+    @Test
+    public void testArchiveUnitsAreMatchedToFiles() throws Exception {
+        File a = folder.newFile("a.c");
+        File b = folder.newFile("b.c");
+        Files.write(a.toPath(), "int x;\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(b.toPath(), "int y;\nint z;\n".getBytes(StandardCharsets.UTF_8));
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + UNIT + " revision=\"1.0.0\">\n\n"
+                + "<unit revision=\"1.0.0\" language=\"C\" filename=\"" + b.getAbsolutePath() + "\">"
+                + decl(1, "y") + "\n" + decl(2, "z") + "\n</unit>\n\n"
+                + "<unit revision=\"1.0.0\" language=\"C\" filename=\"" + a.getAbsolutePath() + "\">"
+                + decl(1, "x") + "\n</unit>\n\n</unit>\n";
+
+        Map<File, TreeContext> contexts = new SrcmlCTreeGenerator("").readArchive(new StringReader(xml), Arrays.asList(a, b));
+        Assert.assertEquals(2, contexts.size());
+
+        ITree x = contexts.get(a).getRoot();
+        Assert.assertEquals(1, x.getChildren().size());
+        Assert.assertEquals("x", x.getChild(0).getChild(0).getChild(1).getLabel());
+
+        ITree y = contexts.get(b).getRoot();
+        Assert.assertEquals(2, y.getChildren().size());
+        ITree name = y.getChild(0).getChild(0).getChild(1);
+        Assert.assertEquals("y", name.getLabel());
+        Assert.assertEquals(4, name.getPos());
+        Assert.assertEquals("z", y.getChild(1).getChild(0).getChild(1).getLabel());
+    }
+
+    @Test
+    public void testPseudoElementsAreDropped() {
+        String pseudoElse = "<else pos:line=\"%d\" pos:column=\"1\">else <block type=\"pseudo\">"
+                + "<empty_stmt pos:line=\"%d\" pos:column=\"6\">%s<pos:position pos:line=\"%d\" pos:column=\"7\"/>"
+                + "</empty_stmt></block></else>";
+        String xml = UNIT + ">"
+                + "<if>if <condition>(<expr><name>a</name></expr>)</condition>"
+                + "<then><expr_stmt><expr><name>b</name></expr>;</expr_stmt></then>"
+                + String.format(pseudoElse, 1, 1, ";", 1) + "</if>"
+                + "<expr_stmt><pos:position pos:line=\"2\" pos:column=\"1\"/></expr_stmt>"
+                // an else with another statement than ; is kept
+                + "<if>if <condition>(<expr><name>c</name></expr>)</condition>"
+                + "<then><expr_stmt><expr><name>d</name></expr>;</expr_stmt></then>"
+                + String.format(pseudoElse, 3, 3, "<name>e</name>", 3) + "</if>"
+                + "</unit>";
+
+        TreeContext ctx = new SrcmlCTreeGenerator("").getTreeContext(xml);
+        Assert.assertEquals(2, count(ctx, "if"));
+        Assert.assertEquals(1, count(ctx, "else"));
+        Assert.assertEquals(2, count(ctx, "expr_stmt"));
+        Assert.assertEquals(0, count(ctx, "empty_stmt"));
+    }
+
+    @Test
+    public void testTreeIsBuiltFromSrcmlOutput() throws Exception {
+        Assume.assumeTrue(new File("/bin/sh").canExecute());
+        // stands in for srcml, whatever the arguments
+        File srcml = folder.newFile("srcml");
+        String xml = UNIT + "><decl_stmt><decl><type><name>int</name></type> <name>x</name></decl>;</decl_stmt>"
+                + "<expr_stmt><pos:position pos:line=\"2\" pos:column=\"1\"/></expr_stmt></unit>";
+        Files.write(srcml.toPath(), ("#!/bin/sh\ncat <<'EOF'\n" + xml + "\nEOF\n").getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(srcml.setExecutable(true));
+
+        TreeContext ctx = new SrcmlCTreeGenerator(srcml.getAbsolutePath()).generateFromString("int x;\n");
+        Assert.assertEquals(1, ctx.getRoot().getChildren().size());
+        Assert.assertEquals(0, count(ctx, "expr_stmt"));
+        Assert.assertEquals("x", ctx.getRoot().getChild(0).getChild(0).getChild(1).getLabel());
+    }
+}
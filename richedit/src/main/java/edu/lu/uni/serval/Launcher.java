@@ -1,8 +1,12 @@
 package edu.lu.uni.serval;
 
 
+import edu.lu.uni.serval.richedit.ediff.DiffExecutor;
+import edu.lu.uni.serval.richedit.ediff.HunkBatchWriter;
+import edu.lu.uni.serval.richedit.jobs.ClusterTrees;
 import edu.lu.uni.serval.richedit.jobs.CompareTrees;
 import edu.lu.uni.serval.richedit.jobs.EnhancedASTDiff;
+import edu.lu.uni.serval.richedit.store.HunkStores;
 import edu.lu.uni.serval.utils.ClusterToPattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,7 +49,7 @@ public class Launcher {
 //        }
         if(args.length != 2)
         {
-            System.out.println("Proper Usage is: \n\tfirst argument full path to .properties file (e.g. an example is located under resources) \n\tsecond argument jobType (e.g RICHEDITSCRIPT, COMPARE)");
+            System.out.println("Proper Usage is: \n\tfirst argument full path to .properties file (e.g. an example is located under resources) \n\tsecond argument jobType (e.g RICHEDITSCRIPT, COMPARE, CLUSTER)");
             System.exit(0);
         }
 
@@ -71,6 +75,13 @@ public class Launcher {
         String input = (String) fixminer.get("inputPath");
         String redisPath = (String) fixminer.get("redisPath");
         String srcMLPath = (String) fixminer.get("srcMLPath");
+        String dataPath = (String) fixminer.get("datapath");
+        String writeBatchSize = String.valueOf(fixminer.getOrDefault("writeBatchSize", HunkBatchWriter.DEFAULT_BATCH_SIZE));
+        String writeFlushInterval = String.valueOf(fixminer.getOrDefault("writeFlushInterval", HunkBatchWriter.DEFAULT_FLUSH_INTERVAL));
+        String store = String.valueOf(fixminer.getOrDefault("store", HunkStores.REDIS));
+        String treeCacheSize = String.valueOf(fixminer.getOrDefault("treeCacheSize", CompareTrees.DEFAULT_TREE_CACHE_SIZE));
+        String diffMaxTreeSize = String.valueOf(fixminer.getOrDefault("diffMaxTreeSize", DiffExecutor.DEFAULT_MAX_TREE_SIZE));
+        String diffTimeout = String.valueOf(fixminer.getOrDefault("diffTimeout", DiffExecutor.DEFAULT_TIMEOUT));
 
 //        String parameter = args[2];
         String parameter = "L1";
@@ -79,12 +90,12 @@ public class Launcher {
 //        String jobType = "COMPARE";
 
 
-        mainLaunch( numOfWorkers, jobType, portDumps,projectType,input,redisPath,parameter, srcMLPath,hunkLimit,projectList,patchSize);
+        mainLaunch( numOfWorkers, jobType, portDumps,projectType,input,redisPath,parameter, srcMLPath,hunkLimit,projectList,patchSize,dataPath,writeBatchSize,writeFlushInterval,store,treeCacheSize,diffMaxTreeSize,diffTimeout);
 
 
     }
 
-    public static void mainLaunch(String numOfWorkers, String jobType, String portDumps, String projectType, String input, String redisPath,String parameter,String srcMLPath,String hunkLimit,String[] projectList,String patchSize){
+    public static void mainLaunch(String numOfWorkers, String jobType, String portDumps, String projectType, String input, String redisPath,String parameter,String srcMLPath,String hunkLimit,String[] projectList,String patchSize,String dataPath,String writeBatchSize,String writeFlushInterval,String store,String treeCacheSize,String diffMaxTreeSize,String diffTimeout){
 
 
         String dbDir;
@@ -100,7 +111,7 @@ public class Launcher {
         try {
             switch (jobType) {
                 case "RICHEDITSCRIPT":
-                    EnhancedASTDiff.main(gumInput, portDumps, dbDir, dumpsName, srcMLPath,parameter,hunkLimit,projectList,patchSize,projectType);
+                    EnhancedASTDiff.main(gumInput, portDumps, dbDir, dumpsName, srcMLPath,parameter,hunkLimit,projectList,patchSize,projectType,writeBatchSize,writeFlushInterval,store,numOfWorkers,diffMaxTreeSize,diffTimeout);
                     break;
 
                 case "COMPARE":
@@ -125,10 +136,13 @@ public class Launcher {
                     }
 
 
-                    CompareTrees.main(redisPath, portDumps,dumpsName, job,numOfWorkers);
+                    CompareTrees.main(redisPath, portDumps,dumpsName, job,numOfWorkers,treeCacheSize);
+                    break;
+                case "CLUSTER":
+                    ClusterTrees.main(redisPath, portDumps, dumpsName, input, dataPath + "/shapes", store);
                     break;
                 case "PATTERN":
-                    ClusterToPattern.main(portDumps,redisPath, dumpsName, parameter);
+                    ClusterToPattern.main(portDumps,redisPath, dumpsName, parameter, store);
                     break;
                 default:
                     throw new Error("unknown Job");
@@ -1,7 +1,10 @@
 package edu.lu.uni.serval.richedit;
 
+import edu.lu.uni.serval.richedit.ediff.DiffExecutor;
+import edu.lu.uni.serval.richedit.ediff.HunkBatchWriter;
 import edu.lu.uni.serval.richedit.jobs.CompareTrees;
 import edu.lu.uni.serval.richedit.jobs.EnhancedASTDiff;
+import edu.lu.uni.serval.richedit.store.HunkStores;
 import edu.lu.uni.serval.utils.ClusterToPattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +59,12 @@ public class Launcher2 {
         String input = appProps.getProperty("inputPath","FORKJOIN");
         String redisPath = appProps.getProperty("redisPath","FORKJOIN");
         String srcMLPath = appProps.getProperty("srcMLPath","FORKJOIN");
+        String writeBatchSize = appProps.getProperty("writeBatchSize", String.valueOf(HunkBatchWriter.DEFAULT_BATCH_SIZE));
+        String writeFlushInterval = appProps.getProperty("writeFlushInterval", String.valueOf(HunkBatchWriter.DEFAULT_FLUSH_INTERVAL));
+        String store = appProps.getProperty("store", HunkStores.REDIS);
+        String treeCacheSize = appProps.getProperty("treeCacheSize", String.valueOf(CompareTrees.DEFAULT_TREE_CACHE_SIZE));
+        String diffMaxTreeSize = appProps.getProperty("diffMaxTreeSize", String.valueOf(DiffExecutor.DEFAULT_MAX_TREE_SIZE));
+        String diffTimeout = appProps.getProperty("diffTimeout", String.valueOf(DiffExecutor.DEFAULT_TIMEOUT));
 
 //        String parameter = args[2];
         String parameter = "L1";
@@ -64,12 +73,12 @@ public class Launcher2 {
         String jobType = "COMPARE";
 
 
-        mainLaunch( numOfWorkers, jobType, portDumps,projectType,input,redisPath,parameter, srcMLPath,hunkLimit,projectList,patchSize);
+        mainLaunch( numOfWorkers, jobType, portDumps,projectType,input,redisPath,parameter, srcMLPath,hunkLimit,projectList,patchSize,writeBatchSize,writeFlushInterval,store,treeCacheSize,diffMaxTreeSize,diffTimeout);
 
 
     }
 
-    public static void mainLaunch(String numOfWorkers, String jobType, String portDumps, String projectType, String input, String redisPath,String parameter,String srcMLPath,String hunkLimit,String[] projectList,String patchSize){
+    public static void mainLaunch(String numOfWorkers, String jobType, String portDumps, String projectType, String input, String redisPath,String parameter,String srcMLPath,String hunkLimit,String[] projectList,String patchSize,String writeBatchSize,String writeFlushInterval,String store,String treeCacheSize,String diffMaxTreeSize,String diffTimeout){
 
 
         String dbDir;
@@ -85,7 +94,7 @@ public class Launcher2 {
         try {
             switch (jobType) {
                 case "RICHEDITSCRIPT":
-                    EnhancedASTDiff.main(gumInput, portDumps, dbDir, dumpsName, srcMLPath,parameter,hunkLimit,projectList,patchSize,projectType);
+                    EnhancedASTDiff.main(gumInput, portDumps, dbDir, dumpsName, srcMLPath,parameter,hunkLimit,projectList,patchSize,projectType,writeBatchSize,writeFlushInterval,store,numOfWorkers,diffMaxTreeSize,diffTimeout);
                     break;
 
                 case "COMPARE":
@@ -110,10 +119,10 @@ public class Launcher2 {
                     }
 
 
-                    CompareTrees.main(redisPath, portDumps,dumpsName, job,numOfWorkers);
+                    CompareTrees.main(redisPath, portDumps,dumpsName, job,numOfWorkers,treeCacheSize);
                     break;
                 case "PATTERN":
-                    ClusterToPattern.main(portDumps,redisPath, dumpsName, parameter);
+                    ClusterToPattern.main(portDumps,redisPath, dumpsName, parameter, store);
                     break;
                 default:
                     throw new Error("unknown Job");
@@ -0,0 +1,208 @@
+package edu.lu.uni.serval.richedit.ediff;
+
+import com.github.gumtreediff.tree.LabelPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the diffs of file pairs on a fixed number of worker threads.
+ *
+ * A diff takes the estimated size of its trees from an admission budget before it is handed to a
+ * worker, and gives it back when it ends, so submit blocks while the diffs in progress hold the
+ * budget. This bounds the memory of the trees parsed and matched at the same time. A diff running
+ * for longer than the timeout gets its worker interrupted, which the matchers and the action
+ * generator check to give up with a CancellationException. The workers live as long as the
+ * executor, so the parser and the matching buffers they keep per thread are reused from diff to
+ * diff. The trees of a diff share a label pool, which is released when the diff ends.
+ */
+public class DiffExecutor implements AutoCloseable {
+
+	private static Logger log = LoggerFactory.getLogger(DiffExecutor.class);
+
+	public static final int DEFAULT_MAX_TREE_SIZE = 2000000;
+
+	public static final long DEFAULT_TIMEOUT = 300;
+
+	/**
+	 * Estimated bytes of source code per tree node.
+	 */
+	static final int BYTES_PER_NODE = 8;
+
+	private final ExecutorService workers;
+
+	private final ScheduledExecutorService timer;
+
+	private final Semaphore admission;
+
+	private final int maxTreeSize;
+
+	private final long timeout;
+
+	private final AtomicLong completed = new AtomicLong();
+
+	private final AtomicLong timedOut = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private final AtomicLong labelLookups = new AtomicLong();
+
+	private final AtomicLong distinctLabels = new AtomicLong();
+
+	/**
+	 * @param maxTreeSize the estimated number of nodes of the trees of the diffs in progress
+	 * @param timeout the time given to a diff, in seconds
+	 */
+	public DiffExecutor(int numOfWorkers, int maxTreeSize, long timeout) {
+		this.maxTreeSize = maxTreeSize;
+		this.timeout = timeout;
+		this.admission = new Semaphore(maxTreeSize);
+		AtomicInteger workerId = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(numOfWorkers,
+				r -> new Thread(r, "diff-worker-" + workerId.incrementAndGet()));
+		this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "diff-timeout");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Estimated number of nodes of the trees of a file pair.
+	 */
+	public static int estimateTreeSize(File prevFile, File revFile) {
+		long bytes = prevFile.length() + revFile.length();
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes / BYTES_PER_NODE));
+	}
+
+	/**
+	 * Queues a diff, waiting until the admission budget has room for its trees. A diff larger than
+	 * the whole budget waits for all the others to end.
+	 */
+	public void submit(String name, int treeSize, Runnable diff) throws InterruptedException {
+		int permits = Math.max(1, Math.min(treeSize, maxTreeSize));
+		admission.acquire(permits);
+		try {
+			workers.execute(() -> run(name, permits, diff));
+		} catch (RejectedExecutionException e) {
+			admission.release(permits);
+			throw e;
+		}
+	}
+
+	private void run(String name, int permits, Runnable diff) {
+		Deadline deadline = new Deadline(Thread.currentThread());
+		ScheduledFuture<?> timeoutTask = timer.schedule(deadline::expire, timeout, TimeUnit.SECONDS);
+		Throwable error = null;
+		LabelPool labels = new LabelPool();
+		LabelPool.bind(labels);
+		try {
+			diff.run();
+		} catch (Throwable e) {
+			// a deep AST can overflow the stack and a huge one exhaust the heap, which only fails this
+			// diff: its frames and trees are gone once caught, and the worker keeps its buffers
+			error = e;
+		} finally {
+			LabelPool.bind(null);
+			labelLookups.addAndGet(labels.getLookups());
+			distinctLabels.addAndGet(labels.size());
+			log.debug("Labels of {}: {}", name, labels);
+			boolean expired = deadline.finish();
+			timeoutTask.cancel(false);
+			// clear an interruption that was not seen by the diff
+			Thread.interrupted();
+			admission.release(permits);
+
+			if (expired) {
+				timedOut.incrementAndGet();
+				log.warn("Timeout after {}s: {}", timeout, name);
+			} else if (error != null) {
+				failed.incrementAndGet();
+				log.error("Diff of {} failed", name, error);
+			} else {
+				completed.incrementAndGet();
+			}
+		}
+		if (error instanceof VirtualMachineError && !recoverable((VirtualMachineError) error))
+			throw (VirtualMachineError) error;
+	}
+
+	private static boolean recoverable(VirtualMachineError error) {
+		return error instanceof StackOverflowError || error instanceof OutOfMemoryError;
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public long getTimedOut() {
+		return timedOut.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of label lookups per distinct label of a diff, over all the diffs
+	 */
+	public double getLabelDedupRatio() {
+		long distinct = distinctLabels.get();
+		return distinct == 0 ? 1D : (double) labelLookups.get() / distinct;
+	}
+
+	/**
+	 * Waits for the queued diffs to end.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		workers.shutdown();
+		try {
+			while (!workers.awaitTermination(1, TimeUnit.MINUTES))
+				log.info("Waiting for the diffs in progress ...");
+		} finally {
+			timer.shutdownNow();
+			log.info("{} diffs done, {} timed out, {} failed", getCompleted(), getTimedOut(), getFailed());
+			log.info("{} label lookups for {} distinct labels (dedup ratio {})", labelLookups.get(),
+					distinctLabels.get(), String.format("%.2f", getLabelDedupRatio()));
+		}
+	}
+
+	/**
+	 * Interrupts a worker when its diff times out, unless the diff has ended meanwhile.
+	 */
+	private static class Deadline {
+
+		private final Thread worker;
+
+		private boolean finished = false;
+
+		private boolean expired = false;
+
+		Deadline(Thread worker) {
+			this.worker = worker;
+		}
+
+		synchronized void expire() {
+			if (!finished) {
+				expired = true;
+				worker.interrupt();
+			}
+		}
+
+		synchronized boolean finish() {
+			finished = true;
+			return expired;
+		}
+	}
+}
@@ -1,13 +1,17 @@
 package edu.lu.uni.serval.richedit.ediff;
 
+import com.github.gumtreediff.matchers.Matcher;
 import com.github.gumtreediff.tree.ITree;
+import edu.lu.uni.serval.richedit.store.DiffEntry;
+import edu.lu.uni.serval.richedit.store.RedisHunkStore;
 import edu.lu.uni.serval.utils.EDiffHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -21,6 +25,20 @@ import java.util.List;
 public class EDiffHunkParser extends EDiffParser {
 
 	private static Logger logger = LoggerFactory.getLogger(EDiffHunkParser.class);
+
+	private final HunkBatchWriter writer;
+
+	public EDiffHunkParser() {
+		this(null);
+	}
+
+	/**
+	 * @param writer the sink buffering the hunks, or null to write each diff entry as soon as it is parsed
+	 */
+	public EDiffHunkParser(HunkBatchWriter writer) {
+		this.writer = writer;
+	}
+
 	@Override
 	public void parseFixPatterns(File prevFile, File revFile, File diffentryFile, String project, JedisPool innerPool,String srcMLPath,String hunkLimit,boolean isJava) {
 
@@ -43,8 +61,11 @@ public class EDiffHunkParser extends EDiffParser {
 
 			int hunkSet = 0;
 			if (processActionSet) {
+				List<DiffEntry.Hunk> hunks = new ArrayList<>();
 
 				for (HierarchicalActionSet actionSet : actionSets) {
+					// stop here when the diff has timed out
+					Matcher.checkInterrupted();
 //					FileOutputStream f = null;
 
 					try {
@@ -62,13 +83,9 @@ public class EDiffHunkParser extends EDiffParser {
 						ITree targetTree = EDiffHelper.getTargets(actionSet,isJava);
 						ITree actionTree = EDiffHelper.getActionTrees(actionSet);
 						ITree shapeTree = EDiffHelper.getShapeTree(actionSet,isJava);
-						try (Jedis inner = innerPool.getResource()) {
-
-							inner.hset("dump", key, actionSet.toString());
-							inner.hset(key, "actionTree", actionTree.toStaticHashString());
-							inner.hset(key, "targetTree", targetTree.toStaticHashString());
-							inner.hset(key, "shapeTree", shapeTree.toStaticHashString());
-						}
+						hunks.add(new DiffEntry.Hunk(key, actionSet.toString(), actionTree.toStaticHashString(),
+								targetTree.toStaticHashString(), shapeTree.toStaticHashString(),
+								EDiffHelper.getFingerprintKey(shapeTree, actionTree, targetTree)));
 //						File f = new File(root+"dumps/"+astNodeType+"/"+String.valueOf(size)+"/");
 //						f.mkdirs();
 //						f = new File(root+"dumps/"+key);
@@ -88,8 +105,11 @@ public class EDiffHunkParser extends EDiffParser {
 					}
 					hunkSet++;
 				}
-				try (Jedis inner = innerPool.getResource()) {
-					inner.hset("diffEntry", pj + "_" + diffentryFile.getName(), "1");
+				String diffEntry = pj + "_" + diffentryFile.getName();
+				if (writer != null) {
+					writer.write(diffEntry, hunks);
+				} else {
+					new RedisHunkStore(innerPool).write(Collections.singletonList(new DiffEntry(diffEntry, hunks)));
 				}
 
 			}
@@ -116,7 +116,7 @@ public class HierarchicalRegrouperForC {
 		if (actionSet.getAstNodeType().equals("block") || actionSet.getAstNodeType().equals("function")){
 			List<HierarchicalActionSet> subActions = actionSet.getSubActions();
 			if (subActions.size() > 1) {
-				boolean b = subActions.stream().allMatch(p -> NodeMap_new.getKeysByValue(NodeMap_new.StatementMap, p.getAstNodeType()).size() == 1 && p.getAstNodeType().equals(subActions.get(0).getAstNodeType()) && p.getAction().getName().equals(subActions.get(0).getAction().getName()));
+				boolean b = subActions.stream().allMatch(p -> NodeMap_new.isStatement(p.getAstNodeType()) && p.getAstNodeType().equals(subActions.get(0).getAstNodeType()) && p.getAction().getName().equals(subActions.get(0).getAction().getName()));
 				if (b ) {
 					subActions.stream().forEach(p -> p.setParent(null));
 					List<HierarchicalActionSet> collect = subActions.stream().map(p -> purifyActionSet(p)).collect(Collectors.toList());
@@ -150,7 +150,7 @@ public class HierarchicalRegrouperForC {
 	}
 
 
-	Predicate<HierarchicalActionSet> predicate = x->NodeMap_new.getKeysByValue(NodeMap_new.StatementMap,x.getAstNodeType()).size() == 1 ;
+	Predicate<HierarchicalActionSet> predicate = x->NodeMap_new.isStatement(x.getAstNodeType()) ;
 	Predicate<HierarchicalActionSet> predicate1 = x->!x.getAstNodeType().equals("block");
 	Predicate<HierarchicalActionSet> predicate2 = x->!x.getAstNodeType().equals("block_content");
 //	Predicate<HierarchicalActionSet> predicate3 = p->p.getAction().getName().equals(subActions.get(0).getAction().getName()));
@@ -215,8 +215,7 @@ public class HierarchicalRegrouperForC {
 			}
 			Action action1 = subaction.getAction();
 			if (!action.getClass().equals(action1.getClass())) {
-				List<Integer> keysByValue = NodeMap_new.getKeysByValue(NodeMap_new.StatementMap, subaction.getAstNodeType());
-				if (keysByValue != null && keysByValue.size() == 1) {
+				if (NodeMap_new.isStatement(subaction.getAstNodeType())) {
 					subaction.setParent(null);
 					return removeParentNode(subaction);
 
@@ -242,8 +241,7 @@ public class HierarchicalRegrouperForC {
 
 //			if(areRelatedActions(action,action1)) {
 				if(!(subaction.getAstNodeType().equals("condition") || subaction.getAstNodeType().equals("init"))){
-				List<Integer> keysByValue = NodeMap_new.getKeysByValue(NodeMap_new.StatementMap, subaction.getAstNodeType());
-					if(keysByValue != null && keysByValue.size() ==1){
+				if (NodeMap_new.isStatement(subaction.getAstNodeType())) {
 							subaction.setParent(null);
 							return removeParentForSingle(subaction);
 					}
@@ -275,8 +273,7 @@ public class HierarchicalRegrouperForC {
 							List<HierarchicalActionSet> subActions1 = subsubsubAction.getSubActions();
 							if (subActions1.size() == 1) {
 								HierarchicalActionSet hierarchicalActionSet = subActions1.get(0);
-								List<Integer> keysByValue = NodeMap_new.getKeysByValue(NodeMap_new.StatementMap, hierarchicalActionSet.getAstNodeType());
-								if (keysByValue != null && keysByValue.size() == 1) {
+								if (NodeMap_new.isStatement(hierarchicalActionSet.getAstNodeType())) {
 									hierarchicalActionSet.setParent(null);
 									return removeBlocks(hierarchicalActionSet);
 
@@ -0,0 +1,131 @@
+package edu.lu.uni.serval.richedit.ediff;
+
+import edu.lu.uni.serval.richedit.store.DiffEntry;
+import edu.lu.uni.serval.richedit.store.HunkStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind sink for the hunks produced by EDiffHunkParser.
+ *
+ * Each worker thread buffers the hunks of the diff entries it has completed, and the buffer is
+ * written to the HunkStore in one batch once it holds batchSize hunks or has been pending for
+ * flushInterval milliseconds. The store marks a diff entry within the same atomic write as its
+ * hunks (a pipelined MULTI/EXEC on Redis), so after a crash an entry is either fully stored and
+ * marked, or absent and parsed again by the next run.
+ */
+public class HunkBatchWriter implements AutoCloseable {
+
+	private static Logger logger = LoggerFactory.getLogger(HunkBatchWriter.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	public static final long DEFAULT_FLUSH_INTERVAL = 5000;
+
+	private final HunkStore store;
+
+	private final int batchSize;
+
+	private final long flushInterval;
+
+	private final Set<Buffer> buffers = ConcurrentHashMap.newKeySet();
+
+	private final ThreadLocal<Buffer> localBuffer = ThreadLocal.withInitial(() -> {
+		Buffer buffer = new Buffer();
+		buffers.add(buffer);
+		return buffer;
+	});
+
+	private final ScheduledExecutorService flusher;
+
+	public HunkBatchWriter(HunkStore store) {
+		this(store, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public HunkBatchWriter(HunkStore store, int batchSize, long flushInterval) {
+		this.store = store;
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "hunk-flusher");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(this::flushExpired, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues the hunks of a completed diff entry on the buffer of the calling thread.
+	 */
+	public void write(String diffEntry, List<DiffEntry.Hunk> hunks) {
+		Buffer buffer = localBuffer.get();
+		synchronized (buffer) {
+			buffer.add(new DiffEntry(diffEntry, hunks));
+			if (buffer.hunkCount >= batchSize)
+				buffer.flush();
+		}
+	}
+
+	/**
+	 * Flushes the buffers of all threads.
+	 */
+	public void flush() {
+		for (Buffer buffer : buffers) {
+			synchronized (buffer) {
+				buffer.flush();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		flusher.shutdownNow();
+		flush();
+	}
+
+	private void flushExpired() {
+		long now = System.currentTimeMillis();
+		for (Buffer buffer : buffers) {
+			synchronized (buffer) {
+				if (now - buffer.lastFlush >= flushInterval)
+					buffer.flush();
+			}
+		}
+	}
+
+	private class Buffer {
+
+		private List<DiffEntry> entries = new ArrayList<>();
+
+		private int hunkCount = 0;
+
+		private long lastFlush = System.currentTimeMillis();
+
+		private void add(DiffEntry entry) {
+			entries.add(entry);
+			hunkCount += entry.getHunks().size();
+		}
+
+		private void flush() {
+			lastFlush = System.currentTimeMillis();
+			if (entries.isEmpty())
+				return;
+			try {
+				store.write(entries);
+				entries = new ArrayList<>();
+				hunkCount = 0;
+			} catch (Exception e) {
+				// keep the entries, they are retried with the next flush
+				logger.error("Failed to flush {} diff entries", entries.size(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package edu.lu.uni.serval.richedit.jobs;
+
+import edu.lu.uni.serval.richedit.store.HunkStore;
+import edu.lu.uni.serval.richedit.store.HunkStores;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+
+/**
+ * Clusters the hunks written by EDiffHunkParser without comparing them pair by pair.
+ *
+ * Two hunks end up in the same cluster of CompareTrees + abstractPatch.py when their shapeTree,
+ * actionTree and targetTree strings are equal and they share the same astNodeType and size. Since
+ * string equality is transitive, the connected components of that pair graph are exactly the groups
+ * of hunks with the same (astNodeType, size, shapeTree, actionTree, targetTree), so a single pass
+ * bucketing the hunks by a digest of the three strings yields the same clusters.
+ *
+ * Hunks stored with a fingerprint are bucketed by it without hashing their strings again. The strings
+ * of the first hunk of each bucket are kept to verify the following ones, and a hunk colliding with
+ * them falls back to the digest of its strings.
+ */
+public class ClusterTrees {
+
+    private static Logger log = LoggerFactory.getLogger(ClusterTrees.class);
+
+
+    public static void main(String redisPath, String portDumps, String dumpsName, String inputPath, String clusterPath, String store) throws Exception {
+
+        HunkClusters clusters = new HunkClusters();
+        try (HunkStore hunkStore = HunkStores.open(store, redisPath, dumpsName, portDumps)) {
+            hunkStore.scanTrees(clusters::add);
+        }
+
+        List<List<String>> result = clusters.getClusters();
+        log.info("{} hunks grouped into {} clusters", clusters.getHunkCount(), result.size());
+
+        exportClusters(result, inputPath, clusterPath);
+
+        log.info("End process");
+    }
+
+    /**
+     * Writes the clusters with the layout of abstractPatch.dumpFilesCore, i.e.
+     * clusterPath/astNodeType/size/clusterIndex/dumpFile holding a copy of the DiffEntry of the hunk.
+     */
+    public static void exportClusters(List<List<String>> clusters, String inputPath, String clusterPath) throws IOException {
+        Map<String, Integer> clusterIndexes = new HashMap<>();
+        for (List<String> cluster : clusters) {
+            String[] first = cluster.get(0).split("/");
+            String group = first[0] + "/" + first[1];
+            int idx = clusterIndexes.merge(group, 1, Integer::sum) - 1;
+            log.info("exporting cluster {} {} {} with {} members", first[0], first[1], idx, cluster.size());
+
+            for (String hunk : cluster) {
+                String dumpFile = hunk.split("/")[2];
+                String[] split = dumpFile.split("_");
+                String project = split[0];
+                String filename = String.join("_", Arrays.copyOfRange(split, 1, split.length - 1));
+
+                File diffEntry = new File(inputPath, project + "/DiffEntries/" + filename);
+                File clusterSavePath = new File(clusterPath, group + "/" + idx);
+                FileUtils.copyFile(diffEntry, new File(clusterSavePath, dumpFile));
+            }
+        }
+    }
+
+    /**
+     * The composite digest of the tree strings of a hunk.
+     */
+    public static String digest(Map<String, String> treeMap) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String field : HunkStore.TREE_FIELDS) {
+                byte[] bytes = treeMap.get(field).getBytes(StandardCharsets.UTF_8);
+                // length prefix so that the concatenation of the three strings is unambiguous
+                md.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                        (byte) (bytes.length >>> 8), (byte) bytes.length});
+                md.update(bytes);
+            }
+            return Base64.getEncoder().encodeToString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Buckets hunk keys (astNodeType/size/dumpFile) by astNodeType, size and tree digest.
+     */
+    public static class HunkClusters {
+
+        private final Map<String, List<String>> buckets = new HashMap<>();
+
+        private final Map<String, Map<String, String>> representatives = new HashMap<>();
+
+        private int hunkCount = 0;
+
+        public void add(String key, Map<String, String> treeMap) {
+            if (treeMap == null || !treeMap.keySet().containsAll(Arrays.asList(HunkStore.TREE_FIELDS))) {
+                log.debug("{} has no tree strings", key);
+                return;
+            }
+            String[] split = key.split("/");
+            if (split.length != 3) {
+                log.debug("{} is not a hunk key", key);
+                return;
+            }
+            String group = split[0] + "/" + split[1] + "/";
+            String fingerprint = treeMap.get(HunkStore.FINGERPRINT);
+            String bucket = null;
+            if (fingerprint != null) {
+                bucket = group + fingerprint;
+                Map<String, String> representative = representatives.putIfAbsent(bucket, treeMap);
+                if (representative != null && !HunkStore.sameTrees(representative, treeMap)) {
+                    log.warn("fingerprint collision between {} and {}", buckets.get(bucket).get(0), key);
+                    bucket = null;
+                }
+            }
+            if (bucket == null)
+                bucket = group + digest(treeMap);
+            buckets.computeIfAbsent(bucket, k -> new ArrayList<>()).add(key);
+            hunkCount++;
+        }
+
+        public int getHunkCount() {
+            return hunkCount;
+        }
+
+        /**
+         * The clusters with at least two members, each sorted, ordered by astNodeType, size and
+         * decreasing cluster size. Singletons are dropped as they never appear in a compared pair.
+         */
+        public List<List<String>> getClusters() {
+            List<List<String>> clusters = new ArrayList<>();
+            for (List<String> members : buckets.values()) {
+                if (members.size() < 2)
+                    continue;
+                List<String> cluster = new ArrayList<>(members);
+                Collections.sort(cluster);
+                clusters.add(cluster);
+            }
+            clusters.sort(Comparator.<List<String>, String>comparing(c -> group(c.get(0)))
+                    .thenComparing(c -> -c.size())
+                    .thenComparing(c -> c.get(0)));
+            return clusters;
+        }
+
+        private static String group(String key) {
+            return key.substring(0, key.lastIndexOf('/'));
+        }
+    }
+}
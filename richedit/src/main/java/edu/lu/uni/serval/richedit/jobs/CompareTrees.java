@@ -1,5 +1,8 @@
 package edu.lu.uni.serval.richedit.jobs;
 
+import edu.lu.uni.serval.richedit.store.CachedHunkStore;
+import edu.lu.uni.serval.richedit.store.HunkStore;
+import edu.lu.uni.serval.richedit.store.RedisHunkStore;
 import edu.lu.uni.serval.utils.CallShell;
 import edu.lu.uni.serval.utils.EDiffHelper;
 import edu.lu.uni.serval.utils.PoolBuilder;
@@ -8,27 +11,43 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 
 /**
  * Created by anilkoyuncu on 03/04/2018.
+ *
+ * Each of the numOfWorkers workers claims the pairs to compare in chunks of CHUNK_SIZE, so that a
+ * chunk costs one SPOP, one pipelined fetch of the trees it references and one pipelined write of
+ * its identical pairs instead of several round trips per pair.
  */
 public class CompareTrees {
 
     private static Logger log = LoggerFactory.getLogger(CompareTrees.class);
 
+    /**
+     * Number of pairs a worker claims from the set "compare" at once.
+     */
+    public static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Memory in MB for the trees cached while comparing.
+     */
+    public static final int DEFAULT_TREE_CACHE_SIZE = 256;
+
 
     public static void main(String redisPath, String portDumps, String dumpsName, String job,String numOfWorkers) throws Exception {
+        main(redisPath, portDumps, dumpsName, job, numOfWorkers, String.valueOf(DEFAULT_TREE_CACHE_SIZE));
+    }
+
+    public static void main(String redisPath, String portDumps, String dumpsName, String job,String numOfWorkers,String treeCacheSize) throws Exception {
 
         // shape /Users/anil.koyuncu/projects/test/richedit-core/python/data/redis ALLdumps-gumInput.rdb clusterl0-gumInputALL.rdb /Users/anil.koyuncu/projects/test/richedit-core/python/data/richEditScript
 
@@ -54,161 +73,122 @@ public class CompareTrees {
         final JedisPool outerPool = new JedisPool(PoolBuilder.getPoolConfig(), "localhost",Integer.valueOf(port),20000000);
 
 //        List<String> listOfPairs = AkkaTreeParser.getMessages(innerPool,Integer.valueOf(numOfWorkers));
+        final CachedHunkStore store = new CachedHunkStore(new RedisHunkStore(outerPool), Long.valueOf(treeCacheSize) << 20);
         HashMap<String, String> filenames = getFilenames(outerPool);
 //        List<String> listOfPairs = AkkaTreeParser.files2compare(outerPool);
 
 
-//        ArrayList<String> samePairs = new ArrayList<>();
-        ArrayList<String> errorPairs = new ArrayList<>();
-
-//        Integer numberOfWorkers = Integer.valueOf(numOfWorkers);
-//        final ExecutorService executor = Executors.newWorkStealingPool(numberOfWorkers);
         Long compare;
         try (Jedis inner = outerPool.getResource()) {
             compare = inner.scard("compare");
         }
-        IntStream stream = IntStream.range(0, compare.intValue());
-
-        ProgressBar.wrap(stream.
-                parallel(),"Task").
-
-                forEach(m ->
-                        {
-                            newCoreCompare(job, errorPairs, filenames, outerPool);
-                        }
-                );
-
-//
-//        ArrayList<Future<?>> results = new ArrayList<Future<?>>();
-//        for (int i = 0; i <numberOfWorkers ; i++) {
-//
-//
-//            // schedule the work
-//            log.info("Starting job {}",i);
-//            final Future<?> future = executor.submit(new RunnableCompare(job, errorPairs, filenames, outerPool, i));
-//            results.add(future);
-//        }
-//        for (Future<?> future : ProgressBar.wrap(results, "Comparing")){
-////        for (Future<?> future:results){
-//            try {
-//                // wait for task to complete
-//                future.get();
-//
-//            } catch (InterruptedException e) {
-//
-//                e.printStackTrace();
-//            } catch (ExecutionException e) {
-//
-//                e.printStackTrace();
-//            }
-////            finally {
-////                executor.shutdownNow();
-////            }
-//        }
-//        executor.shutdownNow();
-
-
 
+        int workers = Integer.valueOf(numOfWorkers);
+        AtomicLong compared = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long start = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try (ProgressBar pb = new ProgressBar("Comparing", compare)) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                results.add(executor.submit(() -> {
+                    Set<String> chunk;
+                    while (!(chunk = claimPairs(outerPool, CHUNK_SIZE)).isEmpty()) {
+                        errors.addAndGet(compareChunk(job, chunk, filenames, outerPool, store));
+                        long done = compared.addAndGet(chunk.size());
+                        pb.stepBy(chunk.size());
+                        pb.setExtraMessage(String.format("%.0f pairs/s", rate(done, start)));
+                    }
+                }));
+            }
+            for (Future<?> future : results) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
 
+        log.info("Compared {} pairs in {} ms, {} pairs/s, {} not comparable", compared.get(),
+                System.currentTimeMillis() - start, String.format("%.0f", rate(compared.get(), start)), errors.get());
+        log.info("Tree cache: {}", store);
         log.info("End process");
     }
 
+    private static double rate(long pairs, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return pairs * 1000.0 / elapsed;
+    }
 
-//    public static class RunnableCompare implements Runnable {
-//        String job;
-//        ArrayList<String> errorPairs;
-//        HashMap<String, String> filenames;
-//        JedisPool outerPool;
-//        Integer threadID;
-//
-//        public RunnableCompare(String treeType,ArrayList<String> errorPairs, HashMap<String, String> filenames,JedisPool outerPool,Integer threadID) {
-//            this.job = treeType;
-//            this.errorPairs = errorPairs;
-//            this.filenames = filenames;
-//            this.outerPool = outerPool;
-//            this.threadID = threadID;
-//        }
-//
-//        @Override
-//        public void run() {
-////            int dbsize = 1;
-//            boolean stop = true;
-//            while(stop) {
-////                try (Jedis outer = outerPool.getResource()) {
-////                    dbsize = Math.toIntExact(outer.scard("compare"));
-////                }
-////                if (dbsize != 0){
-//                    stop = newCoreCompare(job, errorPairs, filenames, outerPool);
-////                }
-//            }
-//            log.info("Completed worker {}",threadID);
-//        }
-//    }
-
-
-    public static boolean newCoreCompare( String treeType,ArrayList<String> errorPairs, HashMap<String, String> filenames,JedisPool outerPool ) {
-
-        String pairName;
+    /**
+     * Removes up to chunkSize pairs from the set "compare" in a single round trip.
+     */
+    public static Set<String> claimPairs(JedisPool outerPool, int chunkSize) {
         try (Jedis outer = outerPool.getResource()) {
-            pairName = outer.spop("compare");
+            Set<String> pairs = outer.spop("compare", chunkSize);
+            return pairs == null ? Collections.emptySet() : pairs;
         }
+    }
 
-        String matchKey = null;
-        try {
-
+    /**
+     * Compares a chunk of claimed pairs (astNodeType-size/i/j).
+     *
+     * The trees of the hunks referenced by the chunk that the store does not cache yet are fetched with
+     * one pipelined call, the pairs are compared locally and the identical ones are written to db 2
+     * with one pipelined call.
+     *
+     * @return the number of pairs that could not be compared
+     */
+    public static int compareChunk(String treeType, Collection<String> pairs, HashMap<String, String> filenames, JedisPool outerPool, HunkStore store) {
+        if (!treeType.equals("single"))
+            return 0;
+
+        Map<String, String[]> pairKeys = new LinkedHashMap<>();
+        Set<String> keys = new HashSet<>();
+        for (String pairName : pairs) {
             String[] split = pairName.split("/");
+            if (split.length != 3) {
+                log.debug("{} not comparable", pairName);
+                continue;
+            }
+            String[] pair = {EDiffHelper.getTreeKey(split[0], split[1], filenames), EDiffHelper.getTreeKey(split[0], split[2], filenames)};
+            pairKeys.put(pairName, pair);
+            keys.add(pair[0]);
+            keys.add(pair[1]);
+        }
 
-
-            String i = split[1];
-            String j = split[2];
-            String keyName = split[0];
-            matchKey = keyName + "/" + (String.valueOf(i)) + "/" + String.valueOf(j);
-
-            switch (treeType) {
-                case "single":
-
-                    if (matchKey == null){
-                        return false;
-                    }
-                    Map<String, String> oldTreeString = EDiffHelper.getTreeString(keyName, i, outerPool, filenames);
-                    Map<String, String> newTreeString = EDiffHelper.getTreeString(keyName, j, outerPool, filenames);
-
-                    String oldShapeTree =oldTreeString.get("shapeTree");
-                    String newShapeTree =newTreeString.get("shapeTree");
-
-                    String oldActionTree = oldTreeString.get("actionTree");
-                    String newActionTree = newTreeString.get("actionTree");
-
-                    String oldTargetTree = oldTreeString.get("targetTree");
-                    String newTargetTree = newTreeString.get("targetTree");
-
-
-                    if (oldShapeTree.equals(newShapeTree)) {
-                        if (oldActionTree.equals(newActionTree)) {
-                            if (oldTargetTree.equals(newTargetTree)) {
-//                                samePairs.add(matchKey);
-                                try (Jedis jedis = outerPool.getResource()) {
-////                            jedis.del(matchKey);
-                                    jedis.select(2);
-                                    jedis.set(matchKey, "1");
-                                }
-                            }
-                        }
-                    }
-                    return true;
-                default:
-                    return true;
-//                    break;
+        Map<String, Map<String, String>> trees = store.getTrees(keys);
+
+        int errors = pairs.size() - pairKeys.size();
+        List<String> samePairs = new ArrayList<>();
+        for (Map.Entry<String, String[]> pair : pairKeys.entrySet()) {
+            Map<String, String> oldTreeString = trees.get(pair.getValue()[0]);
+            Map<String, String> newTreeString = trees.get(pair.getValue()[1]);
+            if (!hasTrees(oldTreeString) || !hasTrees(newTreeString)) {
+                log.debug("{} not comparable", pair.getKey());
+                errors++;
+                continue;
+            }
+            if (HunkStore.sameTrees(oldTreeString, newTreeString)) {
+                samePairs.add(pair.getKey());
             }
-        }catch (Exception e) {
-            errorPairs.add(matchKey);
-            if (pairName == null)
-                return false;
-            log.debug("{} not comparable", pairName);
         }
 
+        if (!samePairs.isEmpty()) {
+            try (Jedis jedis = outerPool.getResource()) {
+                jedis.select(2);
+                Pipeline pipeline = jedis.pipelined();
+                for (String matchKey : samePairs) {
+                    pipeline.set(matchKey, "1");
+                }
+                pipeline.sync();
+            }
+        }
+        return errors;
+    }
 
-        return true;
+    private static boolean hasTrees(Map<String, String> treeMap) {
+        return treeMap != null && treeMap.keySet().containsAll(Arrays.asList(HunkStore.TREE_FIELDS));
     }
 
 
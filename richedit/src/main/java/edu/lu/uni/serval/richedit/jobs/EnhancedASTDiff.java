@@ -1,21 +1,21 @@
 package edu.lu.uni.serval.richedit.jobs;
 
+import edu.lu.uni.serval.richedit.ediff.DiffExecutor;
 import edu.lu.uni.serval.richedit.ediff.EDiffHunkParser;
+import edu.lu.uni.serval.richedit.ediff.HunkBatchWriter;
 import edu.lu.uni.serval.utils.FileHelper;
 import edu.lu.uni.serval.richedit.ediff.MessageFile;
-import edu.lu.uni.serval.utils.CallShell;
-import edu.lu.uni.serval.utils.PoolBuilder;
+import edu.lu.uni.serval.richedit.store.HunkStore;
+import edu.lu.uni.serval.richedit.store.HunkStores;
 import me.tongfei.progressbar.ProgressBar;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,20 +26,13 @@ public class EnhancedASTDiff {
 
 	private static Logger log = LoggerFactory.getLogger(EnhancedASTDiff.class);
 
-	public static void main(String inputPath, String portInner, String dbDir, String chunkName,String srcMLPath,String parameter,String hunkLimit,String[] projectList,String patchSize,String projectType) throws Exception {
+	public static void main(String inputPath, String portInner, String dbDir, String chunkName,String srcMLPath,String parameter,String hunkLimit,String[] projectList,String patchSize,String projectType,String writeBatchSize,String writeFlushInterval,String store,String numOfWorkers,String diffMaxTreeSize,String diffTimeout) throws Exception {
 
 
 		String parameters = String.format("\nInput path %s",inputPath);
 		log.info(parameters);
 
-		CallShell cs = new CallShell();
-		String cmd = "bash "+dbDir + "/" + "startServer.sh" +" %s %s %s";
-
-		cmd = String.format(cmd, dbDir,chunkName,Integer.valueOf(portInner));
-
-		cs.runShell(cmd, portInner);
-
-		JedisPool innerPool = new JedisPool(PoolBuilder.getPoolConfig(), "127.0.0.1",Integer.valueOf(portInner),20000000);
+		HunkStore hunkStore = HunkStores.open(store, dbDir, chunkName, portInner);
 
 		boolean isJava = false;
 		if (projectType.equals("java")){
@@ -92,26 +85,36 @@ public class EnhancedASTDiff {
 
 		}
 
-		Map<String, String> diffEntry;
-		try (Jedis inner = innerPool.getResource()) {
-			diffEntry = inner.hgetAll("diffEntry");
-
-		}
+		Set<String> diffEntry = hunkStore.getDiffEntries();
 		log.info("{} files to process ...", allMessageFiles.size());
 		if (diffEntry != null) {
 			log.info("{} files already process ...", diffEntry.size());
-			allMessageFiles = allMessageFiles.stream().filter(f -> !diffEntry.containsKey(f.getProject() + "_" + f.getDiffEntryFile().getName())).collect(Collectors.toList());
+			allMessageFiles = allMessageFiles.stream().filter(f -> !diffEntry.contains(f.getProject() + "_" + f.getDiffEntryFile().getName())).collect(Collectors.toList());
 			log.info("{} files to process ...", allMessageFiles.size());
 		}
 		boolean finalIsJava = isJava;
-		ProgressBar.wrap(allMessageFiles.stream().
-				parallel(),"Task").
-				forEach(m ->
-						{
-							EDiffHunkParser parser =  new EDiffHunkParser();
-							parser.parseFixPatterns(m.getPrevFile(),m.getRevFile(), m.getDiffEntryFile(),project,innerPool,srcMLPath,hunkLimit, finalIsJava);
-						}
-				);
+		HunkBatchWriter writer = new HunkBatchWriter(hunkStore, Integer.valueOf(writeBatchSize), Long.valueOf(writeFlushInterval));
+		// flush the completed diff entries if the run is interrupted
+		Thread flushOnExit = new Thread(writer::close);
+		Runtime.getRuntime().addShutdownHook(flushOnExit);
+		// the executor is closed first, so that the bar sees the queued diffs finish
+		try (ProgressBar pb = new ProgressBar("Task", allMessageFiles.size());
+			 DiffExecutor executor = new DiffExecutor(Integer.valueOf(numOfWorkers), Integer.valueOf(diffMaxTreeSize), Long.valueOf(diffTimeout))) {
+			for (MessageFile m : allMessageFiles) {
+				executor.submit(m.getRevFile().getName(), DiffExecutor.estimateTreeSize(m.getPrevFile(), m.getRevFile()), () -> {
+					try {
+						EDiffHunkParser parser = new EDiffHunkParser(writer);
+						parser.parseFixPatterns(m.getPrevFile(), m.getRevFile(), m.getDiffEntryFile(), project, null, srcMLPath, hunkLimit, finalIsJava);
+					} finally {
+						pb.step();
+					}
+				});
+			}
+		} finally {
+			writer.close();
+			Runtime.getRuntime().removeShutdownHook(flushOnExit);
+			hunkStore.close();
+		}
 
         }
 
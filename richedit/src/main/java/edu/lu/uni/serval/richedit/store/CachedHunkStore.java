@@ -0,0 +1,189 @@
+package edu.lu.uni.serval.richedit.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * HunkStore keeping the tree strings of the most recently used hunks in memory.
+ *
+ * During the comparison of a group of k hunks every hunk takes part in k-1 pairs, so the trees are
+ * fetched from the underlying store once and then served from this cache, which is shared by all
+ * compare workers. The cache is bounded by the estimated heap footprint of the cached strings rather
+ * than by the number of hunks, as the size of the trees varies by orders of magnitude, and evicts the
+ * least recently used hunks first.
+ */
+public class CachedHunkStore implements HunkStore {
+
+	/**
+	 * Estimated bytes held by a cached hunk besides the characters of its strings.
+	 */
+	private static final int ENTRY_OVERHEAD = 256;
+
+	private final HunkStore store;
+
+	private final long capacity;
+
+	private final LinkedHashMap<String, Map<String, String>> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long size = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param capacity the maximum estimated size of the cached trees, in bytes
+	 */
+	public CachedHunkStore(HunkStore store, long capacity) {
+		this.store = store;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void write(List<DiffEntry> entries) {
+		synchronized (cache) {
+			for (DiffEntry entry : entries)
+				for (DiffEntry.Hunk hunk : entry.getHunks())
+					remove(hunk.getKey());
+		}
+		store.write(entries);
+	}
+
+	@Override
+	public Set<String> getDiffEntries() {
+		return store.getDiffEntries();
+	}
+
+	@Override
+	public Map<String, String> getTrees(String key) {
+		Map<String, String> trees;
+		synchronized (cache) {
+			trees = cache.get(key);
+		}
+		if (trees != null) {
+			hits.incrementAndGet();
+			return trees;
+		}
+		misses.incrementAndGet();
+		trees = Collections.unmodifiableMap(store.getTrees(key));
+		synchronized (cache) {
+			put(key, trees);
+		}
+		return trees;
+	}
+
+	@Override
+	public Map<String, Map<String, String>> getTrees(Collection<String> keys) {
+		Map<String, Map<String, String>> trees = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		synchronized (cache) {
+			for (String key : keys) {
+				Map<String, String> cached = cache.get(key);
+				if (cached != null)
+					trees.put(key, cached);
+				else
+					missing.add(key);
+			}
+		}
+		hits.addAndGet(trees.size());
+		misses.addAndGet(missing.size());
+		if (missing.isEmpty())
+			return trees;
+
+		Map<String, Map<String, String>> fetched = store.getTrees(missing);
+		synchronized (cache) {
+			for (Map.Entry<String, Map<String, String>> entry : fetched.entrySet()) {
+				Map<String, String> value = Collections.unmodifiableMap(entry.getValue());
+				put(entry.getKey(), value);
+				trees.put(entry.getKey(), value);
+			}
+		}
+		return trees;
+	}
+
+	@Override
+	public String getDump(String key) {
+		return store.getDump(key);
+	}
+
+	@Override
+	public void scanTrees(BiConsumer<String, Map<String, String>> consumer) {
+		store.scanTrees(consumer);
+	}
+
+	@Override
+	public void close() {
+		store.close();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the estimated size of the cached trees, in bytes
+	 */
+	public long getSize() {
+		synchronized (cache) {
+			return size;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses, %d evictions, %d hunks cached in %d bytes",
+				getHits(), getMisses(), getEvictions(), cache.size(), getSize());
+	}
+
+	/**
+	 * Estimated heap footprint of the trees of a hunk.
+	 */
+	static long weigh(String key, Map<String, String> trees) {
+		long chars = key.length();
+		for (Map.Entry<String, String> entry : trees.entrySet())
+			chars += entry.getKey().length() + (entry.getValue() == null ? 0 : entry.getValue().length());
+		return ENTRY_OVERHEAD + 2 * chars;
+	}
+
+	private void put(String key, Map<String, String> trees) {
+		long weight = weigh(key, trees);
+		remove(key);
+		if (weight > capacity)
+			return;
+		cache.put(key, trees);
+		size += weight;
+
+		Iterator<Map.Entry<String, Map<String, String>>> eldest = cache.entrySet().iterator();
+		while (size > capacity && eldest.hasNext()) {
+			Map.Entry<String, Map<String, String>> entry = eldest.next();
+			size -= weigh(entry.getKey(), entry.getValue());
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private void remove(String key) {
+		Map<String, String> previous = cache.remove(key);
+		if (previous != null)
+			size -= weigh(key, previous);
+	}
+}
@@ -0,0 +1,75 @@
+package edu.lu.uni.serval.richedit.store;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The hunks parsed from one DiffEntry file, stored together with the marker of the entry.
+ */
+public class DiffEntry {
+
+	private final String name;
+
+	private final List<Hunk> hunks;
+
+	public DiffEntry(String name, List<Hunk> hunks) {
+		this.name = name;
+		this.hunks = hunks;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<Hunk> getHunks() {
+		return hunks;
+	}
+
+	public static class Hunk {
+
+		private final String key;
+
+		private final String dump;
+
+		private final Map<String, String> trees = new HashMap<>();
+
+		public Hunk(String key, String dump, String actionTree, String targetTree, String shapeTree) {
+			this(key, dump, actionTree, targetTree, shapeTree, null);
+		}
+
+		/**
+		 * @param fingerprint the combined fingerprint of the three trees, see EDiffHelper.getFingerprintKey
+		 */
+		public Hunk(String key, String dump, String actionTree, String targetTree, String shapeTree, String fingerprint) {
+			this.key = key;
+			this.dump = dump;
+			trees.put("actionTree", actionTree);
+			trees.put("targetTree", targetTree);
+			trees.put("shapeTree", shapeTree);
+			if (fingerprint != null)
+				trees.put(HunkStore.FINGERPRINT, fingerprint);
+		}
+
+		/**
+		 * @return astNodeType/size/dumpFile
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the textual action set of the hunk
+		 */
+		public String getDump() {
+			return dump;
+		}
+
+		/**
+		 * @return the tree strings of the hunk, keyed by HunkStore.TREE_FIELDS, and its fingerprint
+		 */
+		public Map<String, String> getTrees() {
+			return trees;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package edu.lu.uni.serval.richedit.store;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage of the edit script dumps and tree strings of the parsed hunks.
+ *
+ * Hunks are identified by their key astNodeType/size/dumpFile. The dump of a hunk is its textual
+ * action set, its trees are the shapeTree, actionTree and targetTree strings along with their
+ * fixed width fingerprint.
+ */
+public interface HunkStore extends AutoCloseable {
+
+	String[] TREE_FIELDS = {"shapeTree", "actionTree", "targetTree"};
+
+	/**
+	 * Field holding the combined fingerprint of the trees, absent for hunks stored before it existed.
+	 */
+	String FINGERPRINT = "fingerprint";
+
+	/**
+	 * @return true when the two tree maps hold the same tree strings. The fingerprints, when both are
+	 * present, reject most unequal pairs without comparing the strings.
+	 */
+	static boolean sameTrees(Map<String, String> a, Map<String, String> b) {
+		String fa = a.get(FINGERPRINT);
+		String fb = b.get(FINGERPRINT);
+		if (fa != null && fb != null && !fa.equals(fb))
+			return false;
+		for (String field : TREE_FIELDS)
+			if (!Objects.equals(a.get(field), b.get(field)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Stores the hunks of the given diff entries and marks the entries as processed, atomically.
+	 */
+	void write(List<DiffEntry> entries);
+
+	/**
+	 * @return the names of the diff entries already processed
+	 */
+	Set<String> getDiffEntries();
+
+	/**
+	 * @return the tree strings of the hunk, or an empty map if the hunk is unknown
+	 */
+	Map<String, String> getTrees(String key);
+
+	/**
+	 * @return the tree strings of the given hunks, fetched together where the store allows it
+	 */
+	default Map<String, Map<String, String>> getTrees(Collection<String> keys) {
+		Map<String, Map<String, String>> trees = new HashMap<>();
+		for (String key : keys)
+			trees.put(key, getTrees(key));
+		return trees;
+	}
+
+	/**
+	 * @return the dump of the hunk, or null if the hunk is unknown
+	 */
+	String getDump(String key);
+
+	/**
+	 * Visits the tree strings of every hunk in the store.
+	 */
+	void scanTrees(BiConsumer<String, Map<String, String>> consumer);
+
+	@Override
+	void close();
+}
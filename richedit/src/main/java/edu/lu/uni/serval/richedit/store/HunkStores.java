@@ -0,0 +1,42 @@
+package edu.lu.uni.serval.richedit.store;
+
+import edu.lu.uni.serval.utils.CallShell;
+import edu.lu.uni.serval.utils.PoolBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.io.File;
+
+/**
+ * Opens the HunkStore selected by the "store" setting of the configuration.
+ */
+public class HunkStores {
+
+	private static Logger log = LoggerFactory.getLogger(HunkStores.class);
+
+	public static final String REDIS = "redis";
+
+	public static final String EMBEDDED = "embedded";
+
+	/**
+	 * @param store     redis or embedded
+	 * @param redisPath the directory of the Redis dumps, also holding the embedded stores
+	 * @param dumpsName the name of the Redis dump, e.g. dumps-java.rdb
+	 * @param port      the port of the Redis server
+	 */
+	public static HunkStore open(String store, String redisPath, String dumpsName, String port) throws Exception {
+		switch (store) {
+			case REDIS:
+				String cmd = "bash " + redisPath + "/" + "startServer.sh" + " %s %s %s";
+				cmd = String.format(cmd, redisPath, dumpsName, Integer.valueOf(port));
+				log.info(cmd);
+				CallShell.runShell(cmd, port);
+				return new RedisHunkStore(new JedisPool(PoolBuilder.getPoolConfig(), "localhost", Integer.valueOf(port), 20000000));
+			case EMBEDDED:
+				return new MappedHunkStore(new File(redisPath, dumpsName.replace(".rdb", ".store")));
+			default:
+				throw new Error("unknown store please specify redis or embedded");
+		}
+	}
+}
@@ -0,0 +1,332 @@
+package edu.lu.uni.serval.richedit.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded HunkStore on an append-only log of memory-mapped segment files, used to run the
+ * RICHEDITSCRIPT, CLUSTER and PATTERN jobs of a single node without starting a Redis server.
+ *
+ * Each record is laid out as [payload length][crc32][type][payload], the payload being a sequence of
+ * length-prefixed UTF-8 strings. A write appends the hunk and diff entry records of a batch followed
+ * by a commit record and forces the segment to disk. When the store is opened, the log is replayed
+ * to rebuild the in-memory index of hunk locations and only the records followed by a commit are
+ * kept, so a batch interrupted by a crash is discarded as a whole.
+ */
+public class MappedHunkStore implements HunkStore {
+
+	private static Logger logger = LoggerFactory.getLogger(MappedHunkStore.class);
+
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 28;
+
+	private static final byte HUNK = 1;
+
+	private static final byte DIFF_ENTRY = 2;
+
+	private static final byte COMMIT = 3;
+
+	private static final int HEADER_SIZE = 9;
+
+	private final File dir;
+
+	private final int segmentSize;
+
+	private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+
+	private final Map<String, Long> hunks = new ConcurrentHashMap<>();
+
+	private final Set<String> diffEntries = ConcurrentHashMap.newKeySet();
+
+	private int writePosition;
+
+	public MappedHunkStore(File dir) throws IOException {
+		this(dir, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public MappedHunkStore(File dir, int segmentSize) throws IOException {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		dir.mkdirs();
+		for (int i = 0; segmentFile(i).exists(); i++)
+			segments.add(map(i));
+		if (segments.isEmpty())
+			segments.add(map(0));
+		replay();
+		logger.info("Opened {} with {} hunks and {} diff entries", dir, hunks.size(), diffEntries.size());
+	}
+
+	@Override
+	public synchronized void write(List<DiffEntry> entries) {
+		int firstSegment = segments.size() - 1;
+		Map<String, Long> written = new HashMap<>();
+		for (DiffEntry entry : entries) {
+			for (DiffEntry.Hunk hunk : entry.getHunks()) {
+				Map<String, String> trees = hunk.getTrees();
+				String[] fields = {hunk.getKey(), hunk.getDump(),
+						trees.get(TREE_FIELDS[0]), trees.get(TREE_FIELDS[1]), trees.get(TREE_FIELDS[2]), trees.get(FINGERPRINT)};
+				// the fingerprint is left out of the record of a hunk without one
+				written.put(hunk.getKey(), append(HUNK, fields[5] == null ? Arrays.copyOf(fields, 5) : fields));
+			}
+			append(DIFF_ENTRY, entry.getName());
+		}
+		append(COMMIT);
+		for (int i = firstSegment; i < segments.size(); i++)
+			segments.get(i).force();
+
+		hunks.putAll(written);
+		for (DiffEntry entry : entries)
+			diffEntries.add(entry.getName());
+	}
+
+	@Override
+	public Set<String> getDiffEntries() {
+		return Collections.unmodifiableSet(diffEntries);
+	}
+
+	@Override
+	public Map<String, String> getTrees(String key) {
+		Long location = hunks.get(key);
+		Map<String, String> trees = new HashMap<>();
+		if (location != null) {
+			String[] fields = read(location, false);
+			for (int i = 0; i < TREE_FIELDS.length; i++)
+				trees.put(TREE_FIELDS[i], fields[i + 2]);
+			if (fields[5] != null)
+				trees.put(FINGERPRINT, fields[5]);
+		}
+		return trees;
+	}
+
+	@Override
+	public String getDump(String key) {
+		Long location = hunks.get(key);
+		return location == null ? null : read(location, true)[1];
+	}
+
+	@Override
+	public void scanTrees(BiConsumer<String, Map<String, String>> consumer) {
+		for (String key : hunks.keySet())
+			consumer.accept(key, getTrees(key));
+	}
+
+	@Override
+	public synchronized void close() {
+		for (MappedByteBuffer segment : segments)
+			segment.force();
+	}
+
+	private File segmentFile(int index) {
+		return new File(dir, String.format("segment-%05d.log", index));
+	}
+
+	private MappedByteBuffer map(int index) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segmentFile(index), "rw")) {
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+	}
+
+	/**
+	 * Returns an independent view of a segment. The casts to ByteBuffer and Buffer in this class
+	 * keep the calls bound to the Java 8 methods, as newer JDKs add covariant overrides of duplicate,
+	 * position and limit which do not exist on Java 8.
+	 */
+	private ByteBuffer segment(int index) {
+		return ((ByteBuffer) segments.get(index)).duplicate();
+	}
+
+	/**
+	 * Rebuilds the index from the committed records and positions the writer after the last commit.
+	 */
+	private void replay() {
+		Map<String, Long> pendingHunks = new HashMap<>();
+		List<String> pendingEntries = new ArrayList<>();
+		int commitSegment = 0;
+		int commitPosition = 0;
+		int endSegment = 0;
+		int endPosition = 0;
+		for (int s = 0; s < segments.size(); s++) {
+			ByteBuffer segment = segment(s);
+			int position = 0;
+			while (true) {
+				Record record = Record.at(segment, position);
+				if (record == null)
+					break;
+				switch (record.type) {
+					case HUNK:
+						pendingHunks.put(record.readStrings(segment, 1)[0], location(s, position));
+						break;
+					case DIFF_ENTRY:
+						pendingEntries.add(record.readStrings(segment, 1)[0]);
+						break;
+					case COMMIT:
+						hunks.putAll(pendingHunks);
+						diffEntries.addAll(pendingEntries);
+						pendingHunks.clear();
+						pendingEntries.clear();
+						commitSegment = s;
+						commitPosition = position + record.size();
+						break;
+				}
+				position += record.size();
+				endSegment = s;
+				endPosition = position;
+			}
+			if (position == 0 && s > commitSegment)
+				break;
+		}
+
+		if (!pendingHunks.isEmpty() || !pendingEntries.isEmpty() || endSegment != commitSegment || endPosition != commitPosition)
+			logger.warn("Discarding the uncommitted tail of {}", dir);
+		// wipe the uncommitted tail so that it cannot be mistaken for records later
+		for (int s = commitSegment; s <= endSegment; s++) {
+			ByteBuffer segment = segment(s);
+			int from = s == commitSegment ? commitPosition : 0;
+			int to = s == endSegment ? endPosition : segmentSize;
+			for (int i = from; i < to; i++)
+				segment.put(i, (byte) 0);
+		}
+		while (segments.size() > commitSegment + 1)
+			segments.remove(segments.size() - 1);
+		writePosition = commitPosition;
+	}
+
+	private long append(byte type, String... fields) {
+		byte[][] bytes = new byte[fields.length][];
+		int length = 1;
+		for (int i = 0; i < fields.length; i++) {
+			bytes[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+			length += 4 + bytes[i].length;
+		}
+		ByteBuffer payload = ByteBuffer.allocate(length);
+		payload.put(type);
+		for (byte[] field : bytes) {
+			payload.putInt(field.length);
+			payload.put(field);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload.array(), 0, length);
+
+		int size = HEADER_SIZE - 1 + length;
+		if (size > segmentSize)
+			throw new IllegalArgumentException("Record of " + size + " bytes does not fit in a segment");
+		if (writePosition + size > segmentSize) {
+			try {
+				segments.add(map(segments.size()));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			writePosition = 0;
+		}
+		int segmentIndex = segments.size() - 1;
+		ByteBuffer segment = segment(segmentIndex);
+		((Buffer) segment).position(writePosition);
+		segment.putInt(length - 1);
+		segment.putInt((int) crc.getValue());
+		segment.put(payload.array(), 0, length);
+
+		long location = location(segmentIndex, writePosition);
+		writePosition += size;
+		return location;
+	}
+
+	private String[] read(long location, boolean withDump) {
+		ByteBuffer segment = segment((int) (location >>> 32));
+		Record record = Record.at(segment, (int) location);
+		if (record == null)
+			throw new IllegalStateException("Corrupted record in " + dir);
+		return record.readStrings(segment, withDump ? 6 : -6);
+	}
+
+	private static long location(int segment, int position) {
+		return ((long) segment << 32) | position;
+	}
+
+	private static class Record {
+
+		private final int position;
+
+		private final int payloadLength;
+
+		private final byte type;
+
+		private Record(int position, int payloadLength, byte type) {
+			this.position = position;
+			this.payloadLength = payloadLength;
+			this.type = type;
+		}
+
+		private int size() {
+			return HEADER_SIZE + payloadLength;
+		}
+
+		/**
+		 * @return the record at the given position, or null at the end of the valid log
+		 */
+		private static Record at(ByteBuffer segment, int position) {
+			if (position + HEADER_SIZE > segment.capacity())
+				return null;
+			int payloadLength = segment.getInt(position);
+			if (payloadLength < 0 || position + HEADER_SIZE + payloadLength > segment.capacity())
+				return null;
+			byte type = segment.get(position + 8);
+			if (type != HUNK && type != DIFF_ENTRY && type != COMMIT)
+				return null;
+
+			ByteBuffer body = segment.duplicate();
+			((Buffer) body).position(position + 8);
+			((Buffer) body).limit(position + HEADER_SIZE + payloadLength);
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			if ((int) crc.getValue() != segment.getInt(position + 4))
+				return null;
+			return new Record(position, payloadLength, type);
+		}
+
+		/**
+		 * Decodes the strings of the payload. A negative count decodes -count strings but skips the
+		 * second one, which is the dump of a hunk record. Strings past the end of the payload, such as
+		 * the fingerprint of a hunk written without one, are null.
+		 */
+		private String[] readStrings(ByteBuffer segment, int count) {
+			boolean skipDump = count < 0;
+			count = Math.abs(count);
+			String[] strings = new String[count];
+			int offset = position + HEADER_SIZE;
+			int end = position + HEADER_SIZE + payloadLength;
+			for (int i = 0; i < count && offset < end; i++) {
+				int length = segment.getInt(offset);
+				offset += 4;
+				if (!(skipDump && i == 1)) {
+					byte[] bytes = new byte[length];
+					ByteBuffer field = segment.duplicate();
+					((Buffer) field).position(offset);
+					field.get(bytes);
+					strings[i] = new String(bytes, StandardCharsets.UTF_8);
+				}
+				offset += length;
+			}
+			return strings;
+		}
+	}
+}
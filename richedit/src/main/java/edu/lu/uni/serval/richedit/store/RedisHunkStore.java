@@ -0,0 +1,121 @@
+package edu.lu.uni.serval.richedit.store;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * HunkStore on the dumps database of a Redis server.
+ *
+ * The dumps are kept in the hash "dump", the trees of a hunk in the hash named after its key and
+ * the processed diff entries in the hash "diffEntry", which is the layout read by the python scripts.
+ */
+public class RedisHunkStore implements HunkStore {
+
+	private static final int SCAN_COUNT = 1000;
+
+	private final JedisPool pool;
+
+	public RedisHunkStore(JedisPool pool) {
+		this.pool = pool;
+	}
+
+	public JedisPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public void write(List<DiffEntry> entries) {
+		try (Jedis inner = pool.getResource()) {
+			Pipeline pipeline = inner.pipelined();
+			pipeline.multi();
+			for (DiffEntry entry : entries) {
+				for (DiffEntry.Hunk hunk : entry.getHunks()) {
+					pipeline.hset("dump", hunk.getKey(), hunk.getDump());
+					pipeline.hmset(hunk.getKey(), hunk.getTrees());
+				}
+				pipeline.hset("diffEntry", entry.getName(), "1");
+			}
+			pipeline.exec();
+			pipeline.sync();
+		}
+	}
+
+	@Override
+	public Set<String> getDiffEntries() {
+		try (Jedis inner = pool.getResource()) {
+			return inner.hkeys("diffEntry");
+		}
+	}
+
+	@Override
+	public Map<String, String> getTrees(String key) {
+		try (Jedis inner = pool.getResource()) {
+			return inner.hgetAll(key);
+		}
+	}
+
+	@Override
+	public Map<String, Map<String, String>> getTrees(Collection<String> keys) {
+		Map<String, Response<Map<String, String>>> responses = new HashMap<>();
+		try (Jedis inner = pool.getResource()) {
+			Pipeline pipeline = inner.pipelined();
+			for (String key : keys) {
+				responses.put(key, pipeline.hgetAll(key));
+			}
+			pipeline.sync();
+		}
+		Map<String, Map<String, String>> trees = new HashMap<>();
+		for (Map.Entry<String, Response<Map<String, String>>> response : responses.entrySet()) {
+			trees.put(response.getKey(), response.getValue().get());
+		}
+		return trees;
+	}
+
+	@Override
+	public String getDump(String key) {
+		try (Jedis inner = pool.getResource()) {
+			return inner.hget("dump", key);
+		}
+	}
+
+	@Override
+	public void scanTrees(BiConsumer<String, Map<String, String>> consumer) {
+		ScanParams params = new ScanParams().match("*/*/*").count(SCAN_COUNT);
+		try (Jedis inner = pool.getResource()) {
+			String cursor = ScanParams.SCAN_POINTER_START;
+			do {
+				ScanResult<String> scan = inner.scan(cursor, params);
+				List<String> keys = scan.getResult();
+
+				Pipeline pipeline = inner.pipelined();
+				List<Response<Map<String, String>>> responses = new ArrayList<>(keys.size());
+				for (String key : keys) {
+					responses.add(pipeline.hgetAll(key));
+				}
+				pipeline.sync();
+
+				for (int i = 0; i < keys.size(); i++) {
+					consumer.accept(keys.get(i), responses.get(i).get());
+				}
+				cursor = scan.getStringCursor();
+			} while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+		}
+	}
+
+	@Override
+	public void close() {
+		pool.close();
+	}
+}
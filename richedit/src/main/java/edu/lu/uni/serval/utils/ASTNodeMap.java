@@ -1,5 +1,7 @@
 package edu.lu.uni.serval.utils;
 
+import com.github.gumtreediff.gen.srcml.NodeMap_new;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -113,4 +115,18 @@ public class ASTNodeMap {
 		map.put(103,"Move");
 		map.put(104,"NoChange");
 	}
+
+	private static final Map<String, Integer> types = NodeMap_new.reverse(map);
+
+	/**
+	 * Returns the id of a JDT node type name.
+	 *
+	 * @throws IllegalArgumentException if the name is not in map
+	 */
+	public static int getType(String name) {
+		Integer type = types.get(name);
+		if (type == null)
+			throw new IllegalArgumentException("unknown node type " + name);
+		return type;
+	}
 }
@@ -1,43 +1,36 @@
 package edu.lu.uni.serval.utils;
 
+import edu.lu.uni.serval.richedit.store.HunkStore;
+import edu.lu.uni.serval.richedit.store.HunkStores;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 
 public class ClusterToPattern {
     private static Logger log = LoggerFactory.getLogger(ClusterToPattern.class);
 
     public static void main(String port,String redisPath, String dumpsName, String parameter) throws Exception {
+        main(port, redisPath, dumpsName, parameter, HunkStores.REDIS);
+    }
+
+    public static void main(String port,String redisPath, String dumpsName, String parameter, String store) throws Exception {
 
-        CallShell cs = new CallShell();
-        String cmd = "bash "+redisPath + "/" + "startServer.sh" +" %s %s %s";
-        cmd = String.format(cmd, redisPath,dumpsName,Integer.valueOf(port));
-        log.trace(cmd);
-        cs.runShell(cmd, port);
-        String host = "localhost";//args[5];
-        final JedisPool outerPool = new JedisPool(PoolBuilder.getPoolConfig(), host,Integer.valueOf(port),20000000);
-        String export = export(parameter, outerPool);
-        System.out.println(export);
+        try (HunkStore hunkStore = HunkStores.open(store, redisPath, dumpsName, port)) {
+            String export = export(parameter, hunkStore);
+            System.out.println(export);
+        }
 
     }
 
-    private static String export(String filename,JedisPool outerPool){
+    private static String export(String filename,HunkStore store){
 
-        try (Jedis outer = outerPool.getResource()) {
-            while (!outer.ping().equals("PONG")) {
-                log.info("wait");
-            }
 //            byte[] s = outer.hget("dump".getBytes(), filename.getBytes());
 //            HierarchicalActionSet actionSet = (HierarchicalActionSet) EDiffHelper.kryoDeseerialize(s);
 //            if (actionSet == null){
 //                throw new Error(filename +" not found");
 //            }
-            String s1 = outer.hget("dump",filename);
-//            outer.close();
-            return s1;
-        }
+        String s1 = store.getDump(filename);
+        return s1;
 
 
 
@@ -5,15 +5,17 @@ import com.github.gumtreediff.gen.srcml.NodeMap_new;
 import com.github.gumtreediff.tree.ITree;
 import com.github.gumtreediff.tree.TreeContext;
 import com.github.gumtreediff.tree.TreeUtils;
+import com.github.gumtreediff.tree.hash.Fingerprint;
+import com.github.gumtreediff.tree.hash.FingerprintHashGenerator;
 import edu.lu.uni.serval.richedit.ediff.HierarchicalActionSet;
+import edu.lu.uni.serval.richedit.store.HunkStore;
 import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.ToIntFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -79,12 +81,7 @@ public class EDiffHelper {
 
         String label = actionSet.getAction().toString();
 //        List<Integer> keysByValue = getKeysByValue(ASTNodeMap.map, astNodeType);
-        List<Integer> keysByValue = getKeysByValue(NodeMap_new.map, astNodeType);
-
-        if(keysByValue.size() != 1){
-            log.error("More than 1");
-        }
-        newType = keysByValue.get(0);
+        newType = NodeMap_new.getType(astNodeType);
         if(actionSet.getParent() == null){
             //root
 
@@ -114,118 +111,65 @@ public class EDiffHelper {
 
 
     public static ITree getTargetTree(HierarchicalActionSet actionSet, ITree parent, ITree children, TreeContext tc,boolean isJava){
+        return buildTree(actionSet, parent, tc, set -> {
+            Action action = set.getAction();
+            if (action instanceof Update || action instanceof Delete)
+                return getNodeType(set.getAstNodeType(), isJava);
+            else if (action instanceof Insert)
+                return ((Insert) action).getParent().getType();
+            else if (action instanceof Move)
+                return ((Move) action).getParent().getType();
+            return 0;
+        });
+    }
 
-        int newType = 0;
-
-        String astNodeType = null;
-        Map<Integer, String> nodeMap;
-        if(isJava){
-             nodeMap = ASTNodeMap.map;
-        }else{
-            nodeMap = NodeMap_new.map;
-        }
-
-        Action action = actionSet.getAction();
-        if (action instanceof Update){
-            astNodeType = actionSet.getAstNodeType();
-
-            List<Integer> keysByValue = getKeysByValue(nodeMap, astNodeType);
+    public static ITree getASTTree(HierarchicalActionSet actionSet, ITree parent, ITree children, TreeContext tc,boolean isJava){
+        return buildTree(actionSet, parent, tc, set -> getNodeType(set.getAstNodeType(), isJava));
+    }
 
-            if(keysByValue.size() != 1){
-                log.error("More than 1");
+    /**
+     * Builds a tree with a node of the given type for each action set of the hierarchy, in pre-order.
+     * The node of a root action set becomes the root of the context, the others are added under the
+     * node of their parent action set, or under the given parent for the first one. The sets left to
+     * visit are kept on a stack, so deep hierarchies do not overflow the call stack.
+     *
+     * @return the root of the context if the action set is a root, the given parent otherwise
+     */
+    private static ITree buildTree(HierarchicalActionSet actionSet, ITree parent, TreeContext tc,
+                                   ToIntFunction<HierarchicalActionSet> types) {
+        ITree result = parent;
+        List<HierarchicalActionSet> sets = new ArrayList<>();
+        List<ITree> parents = new ArrayList<>();
+        sets.add(actionSet);
+        parents.add(parent);
+        while (!sets.isEmpty()) {
+            HierarchicalActionSet set = sets.remove(sets.size() - 1);
+            ITree p = parents.remove(parents.size() - 1);
+            ITree node = tc.createTree(types.applyAsInt(set), "", null);
+            if (set.getParent() == null) {
+                tc.setRoot(node);
+                if (set == actionSet)
+                    result = node;
+            } else {
+                node.setParentAndUpdateChildren(p);
             }
-            newType = keysByValue.get(0);
-        }else if(action instanceof Insert){
-            newType = ((Insert)action).getParent().getType();
-        }else if(action instanceof Move){
-            newType = ((Move)action).getParent().getType();
-        }else if(action instanceof Delete){
-            astNodeType = actionSet.getAstNodeType();
-
-            List<Integer> keysByValue = getKeysByValue(nodeMap, astNodeType);
-
-            if(keysByValue.size() != 1){
-                log.error("More than 1");
+            List<HierarchicalActionSet> subActions = set.getSubActions();
+            for (int i = subActions.size() - 1; i >= 0; i--) {
+                sets.add(subActions.get(i));
+                parents.add(node);
             }
-            newType = keysByValue.get(0);
         }
-
-
-
-        if(actionSet.getParent() == null){
-            //root
-
-//            parent = new Tree(newType,"");
-            parent = tc.createTree(newType, "", null);
-            tc.setRoot(parent);
-        }else{
-//            children = new Tree(newType,"");
-//            parent.addChild(children);
-            children = tc.createTree(newType, "", null);
-            children.setParentAndUpdateChildren(parent);
-        }
-        List<HierarchicalActionSet> subActions = actionSet.getSubActions();
-        if (subActions.size() != 0){
-            for (HierarchicalActionSet subAction : subActions) {
-
-                if(actionSet.getParent() == null){
-                    children = parent;
-                }
-                getTargetTree(subAction,children,null,tc,isJava);
-
-            }
-
-
-        }
-        return parent;
+        return result;
     }
 
-    public static ITree getASTTree(HierarchicalActionSet actionSet, ITree parent, ITree children, TreeContext tc,boolean isJava){
-
-        int newType = 0;
-        Map<Integer, String> nodeMap;
-        if(isJava){
-            nodeMap = ASTNodeMap.map;
-        }else{
-            nodeMap = NodeMap_new.map;
-        }
-        String astNodeType = actionSet.getAstNodeType();
-
-        List<Integer> keysByValue = getKeysByValue(nodeMap, astNodeType);
-
-        if(keysByValue.size() != 1){
-            log.error("More than 1");
-        }
-        newType = keysByValue.get(0);
-        if(actionSet.getParent() == null){
-            //root
-
-//            parent = new Tree(newType,"");
-            parent = tc.createTree(newType, "", null);
-            tc.setRoot(parent);
-        }else{
-//            children = new Tree(newType,"");
-//            parent.addChild(children);
-            children = tc.createTree(newType, "", null);
-            children.setParentAndUpdateChildren(parent);
-        }
-        List<HierarchicalActionSet> subActions = actionSet.getSubActions();
-        if (subActions.size() != 0){
-            for (HierarchicalActionSet subAction : subActions) {
-
-                if(actionSet.getParent() == null){
-                    children = parent;
-                }
-                getASTTree(subAction,children,null,tc,isJava);
-
-            }
 
-
-        }
-        return parent;
+    /**
+     * @return the id of the node type name in ASTNodeMap for Java, or in NodeMap_new for C
+     */
+    public static int getNodeType(String astNodeType, boolean isJava) {
+        return isJava ? ASTNodeMap.getType(astNodeType) : NodeMap_new.getType(astNodeType);
     }
 
-
     public static <T, E> List<T> getKeysByValue(Map<T, E> map, E value) {
         return map.entrySet()
                 .stream()
@@ -326,23 +270,41 @@ public class EDiffHelper {
 
     }
 
-    public  static Map<String, String>  getTreeString(String prefix, String fn, JedisPool outerPool, HashMap<String, String> filenames) {
-        try (Jedis outer = outerPool.getResource()) {
-            try {
-                while (!outer.ping().equals("PONG")) {
-                    log.info("wait");
-                }
+    /**
+     * @return the 128-bit structural fingerprint of the tree as 32 hexadecimal digits, equal for two
+     * trees exactly when their toStaticHashString() are equal, up to hash collisions
+     */
+    public static String getFingerprint(ITree tree) {
+        return FingerprintHashGenerator.fingerprint(tree).toString();
+    }
 
+    /**
+     * @return the fingerprint combining the shape, action and target trees of a hunk, a fixed width
+     * key for the hunks sharing the three tree strings
+     */
+    public static String getFingerprintKey(ITree shapeTree, ITree actionTree, ITree targetTree) {
+        return Fingerprint.combine(FingerprintHashGenerator.fingerprint(shapeTree),
+                FingerprintHashGenerator.fingerprint(actionTree),
+                FingerprintHashGenerator.fingerprint(targetTree)).toString();
+    }
 
-                String dist2load = filenames.get(prefix + "-" + fn);
+    /**
+     * @return the key astNodeType/size/dumpFile of the hunk with index fn in the group prefix (astNodeType-size)
+     */
+    public static String getTreeKey(String prefix, String fn, Map<String, String> filenames) {
+        String dist2load = filenames.get(prefix + "-" + fn);
 
-                String[] split = prefix.split("-");
-                String key = split[0] + "/" + split[1] + "/" + dist2load;
-                Map<String, String> treeMap = outer.hgetAll(key);
-                return treeMap;
-            }catch (Exception e) {
-                e.printStackTrace();
-            }
+        String[] split = prefix.split("-");
+        return split[0] + "/" + split[1] + "/" + dist2load;
+    }
+
+    public  static Map<String, String>  getTreeString(String prefix, String fn, HunkStore store, HashMap<String, String> filenames) {
+        try {
+            String key = getTreeKey(prefix, fn, filenames);
+            Map<String, String> treeMap = store.getTrees(key);
+            return treeMap;
+        }catch (Exception e) {
+            e.printStackTrace();
         }
         return null;
     }
@@ -444,46 +406,18 @@ public class EDiffHelper {
 
 
     public static ITree getActionTree(HierarchicalActionSet actionSet, ITree parent, ITree children,TreeContext tc){
-
-        int newType = 0;
-
-        Action action = actionSet.getAction();
-        if (action instanceof Update){
-            newType = 101;
-        }else if(action instanceof Insert){
-            newType =100;
-        }else if(action instanceof Move){
-            newType = 102;
-        }else if(action instanceof Delete){
-            newType=103;
-        }else{
-            new Exception("unknow action");
-        }
-        if(actionSet.getParent() == null){
-            //root
-
-            parent = tc.createTree(newType, "", null);
-            tc.setRoot(parent);
-
-        }else{
-            children = tc.createTree(newType, "", null);
-            children.setParentAndUpdateChildren(parent);
-
-        }
-        List<HierarchicalActionSet> subActions = actionSet.getSubActions();
-        if (subActions.size() != 0){
-            for (HierarchicalActionSet subAction : subActions) {
-
-                if(actionSet.getParent() == null){
-                    children = parent;
-                }
-                getActionTree(subAction,children,null,tc);
-
-            }
-
-
-        }
-        return parent;
+        return buildTree(actionSet, parent, tc, set -> {
+            Action action = set.getAction();
+            if (action instanceof Update)
+                return 101;
+            else if (action instanceof Insert)
+                return 100;
+            else if (action instanceof Move)
+                return 102;
+            else if (action instanceof Delete)
+                return 103;
+            return 0;
+        });
     }
 
 
@@ -0,0 +1,68 @@
+package edu.lu.uni.serval;
+
+import edu.lu.uni.serval.richedit.store.CachedHunkStore;
+import edu.lu.uni.serval.richedit.store.DiffEntry;
+import edu.lu.uni.serval.richedit.store.MappedHunkStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+
+
+public class TestCachedHunkStore {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DiffEntry entry(String name, int hunks) {
+        List<DiffEntry.Hunk> list = new ArrayList<>();
+        for (int i = 0; i < hunks; i++) {
+            String key = "IfStatement/2/" + name + "_" + i;
+            list.add(new DiffEntry.Hunk(key, "UPD IfStatement@@" + name + i, "action" + i, "target" + i, "shape" + i));
+        }
+        return new DiffEntry(name, list);
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        try (CachedHunkStore store = new CachedHunkStore(new MappedHunkStore(folder.newFolder()), 1 << 20)) {
+            store.write(Arrays.asList(entry("pj_a.java.txt", 3)));
+
+            Map<String, Map<String, String>> trees = store.getTrees(Arrays.asList("IfStatement/2/pj_a.java.txt_0", "IfStatement/2/pj_a.java.txt_1"));
+            Assert.assertEquals("shape1", trees.get("IfStatement/2/pj_a.java.txt_1").get("shapeTree"));
+            Assert.assertEquals(0, store.getHits());
+            Assert.assertEquals(2, store.getMisses());
+
+            trees = store.getTrees(Arrays.asList("IfStatement/2/pj_a.java.txt_1", "IfStatement/2/pj_a.java.txt_2"));
+            Assert.assertEquals("action2", trees.get("IfStatement/2/pj_a.java.txt_2").get("actionTree"));
+            Assert.assertEquals("target0", store.getTrees("IfStatement/2/pj_a.java.txt_0").get("targetTree"));
+            Assert.assertEquals(2, store.getHits());
+            Assert.assertEquals(3, store.getMisses());
+            Assert.assertEquals(0, store.getEvictions());
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        // room for two of these hunks (412 bytes each) only
+        long capacity = 900;
+        try (CachedHunkStore store = new CachedHunkStore(new MappedHunkStore(folder.newFolder()), capacity)) {
+            store.write(Arrays.asList(entry("pj_b.java.txt", 3)));
+
+            store.getTrees("IfStatement/2/pj_b.java.txt_0");
+            store.getTrees("IfStatement/2/pj_b.java.txt_1");
+            store.getTrees("IfStatement/2/pj_b.java.txt_0");
+            store.getTrees("IfStatement/2/pj_b.java.txt_2");
+            Assert.assertEquals(1, store.getEvictions());
+            Assert.assertTrue(store.getSize() <= capacity);
+
+            // _1 was the least recently used hunk
+            store.getTrees("IfStatement/2/pj_b.java.txt_0");
+            Assert.assertEquals(2, store.getHits());
+            store.getTrees("IfStatement/2/pj_b.java.txt_1");
+            Assert.assertEquals(4, store.getMisses());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package edu.lu.uni.serval;
+
+import edu.lu.uni.serval.richedit.jobs.ClusterTrees;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class TestClusterTrees {
+
+    private static Map<String, String> trees(String shape, String action, String target) {
+        Map<String, String> treeMap = new HashMap<>();
+        treeMap.put("shapeTree", shape);
+        treeMap.put("actionTree", action);
+        treeMap.put("targetTree", target);
+        return treeMap;
+    }
+
+    @Test
+    public void testSameTreesAreClustered() {
+        ClusterTrees.HunkClusters clusters = new ClusterTrees.HunkClusters();
+        clusters.add("IfStatement/2/pj_a.java.txt_0", trees("s1", "a1", "t1"));
+        clusters.add("IfStatement/2/pj_b.java.txt_0", trees("s1", "a1", "t1"));
+        clusters.add("IfStatement/2/pj_c.java.txt_1", trees("s1", "a1", "t2"));
+        clusters.add("IfStatement/2/pj_d.java.txt_0", trees("s1", "a1", "t1"));
+        clusters.add("IfStatement/3/pj_e.java.txt_0", trees("s1", "a1", "t1"));
+        clusters.add("IfStatement/3/pj_f.java.txt_0", trees("s1", "a1", "t1"));
+        clusters.add("Block/3/pj_g.java.txt_0", trees("s1", "a1", "t1"));
+
+        List<List<String>> result = clusters.getClusters();
+        Assert.assertEquals(7, clusters.getHunkCount());
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(Arrays.asList("IfStatement/2/pj_a.java.txt_0", "IfStatement/2/pj_b.java.txt_0",
+                "IfStatement/2/pj_d.java.txt_0"), result.get(0));
+        Assert.assertEquals(Arrays.asList("IfStatement/3/pj_e.java.txt_0", "IfStatement/3/pj_f.java.txt_0"), result.get(1));
+    }
+
+    @Test
+    public void testFingerprintCollisionIsVerified() {
+        ClusterTrees.HunkClusters clusters = new ClusterTrees.HunkClusters();
+        Map<String, String> a = trees("s1", "a1", "t1");
+        Map<String, String> b = trees("s1", "a1", "t1");
+        Map<String, String> c = trees("s2", "a1", "t1");
+        Map<String, String> d = trees("s2", "a1", "t1");
+        // c and d collide with the fingerprint of a and b
+        for (Map<String, String> treeMap : Arrays.asList(a, b, c, d))
+            treeMap.put("fingerprint", "0123456789abcdef0123456789abcdef");
+        clusters.add("IfStatement/2/pj_a.java.txt_0", a);
+        clusters.add("IfStatement/2/pj_b.java.txt_0", b);
+        clusters.add("IfStatement/2/pj_c.java.txt_0", c);
+        clusters.add("IfStatement/2/pj_d.java.txt_0", d);
+
+        List<List<String>> result = clusters.getClusters();
+        Assert.assertEquals(2, result.size());
+        Assert.assertTrue(result.contains(Arrays.asList("IfStatement/2/pj_a.java.txt_0", "IfStatement/2/pj_b.java.txt_0")));
+        Assert.assertTrue(result.contains(Arrays.asList("IfStatement/2/pj_c.java.txt_0", "IfStatement/2/pj_d.java.txt_0")));
+    }
+
+    @Test
+    public void testDigestIsUnambiguous() {
+        Assert.assertEquals(ClusterTrees.digest(trees("ab", "c", "d")), ClusterTrees.digest(trees("ab", "c", "d")));
+        Assert.assertNotEquals(ClusterTrees.digest(trees("ab", "c", "d")), ClusterTrees.digest(trees("a", "bc", "d")));
+    }
+
+    @Test
+    public void testIncompleteHunksAreSkipped() {
+        ClusterTrees.HunkClusters clusters = new ClusterTrees.HunkClusters();
+        Map<String, String> partial = trees("s1", "a1", "t1");
+        partial.remove("targetTree");
+        clusters.add("IfStatement/2/pj_a.java.txt_0", partial);
+        clusters.add("IfStatement/2/pj_b.java.txt_0", null);
+        Assert.assertEquals(0, clusters.getHunkCount());
+        Assert.assertTrue(clusters.getClusters().isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package edu.lu.uni.serval;
+
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
+import edu.lu.uni.serval.richedit.ediff.DiffExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+public class TestDiffExecutor {
+
+    @Test
+    public void testTimeoutInterruptsTheDiff() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        DiffExecutor executor = new DiffExecutor(1, 10, 1);
+        executor.submit("endless", 1, () -> {
+            while (true)
+                Matcher.checkInterrupted();
+        });
+        executor.submit("next", 1, done::incrementAndGet);
+        executor.close();
+
+        Assert.assertEquals(1, executor.getTimedOut());
+        Assert.assertEquals(1, executor.getCompleted());
+        Assert.assertEquals(1, done.get());
+    }
+
+    @Test
+    public void testStackOverflowFailsOnlyTheDiff() throws Exception {
+        AtomicReference<Thread> failedWorker = new AtomicReference<>();
+        AtomicReference<Thread> nextWorker = new AtomicReference<>();
+        DiffExecutor executor = new DiffExecutor(1, 10, 60);
+        executor.submit("deep", 1, () -> {
+            failedWorker.set(Thread.currentThread());
+            throw new StackOverflowError();
+        });
+        executor.submit("next", 1, () -> nextWorker.set(Thread.currentThread()));
+        executor.close();
+
+        Assert.assertEquals(1, executor.getFailed());
+        Assert.assertEquals(1, executor.getCompleted());
+        // the worker survived the error, with its per-thread parser and buffers
+        Assert.assertSame(failedWorker.get(), nextWorker.get());
+    }
+
+    @Test
+    public void testAdmissionIsBounded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        DiffExecutor executor = new DiffExecutor(4, 10, 60);
+        for (int i = 0; i < 20; i++) {
+            executor.submit("diff" + i, 4, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                running.decrementAndGet();
+            });
+        }
+        // a diff larger than the budget still runs
+        executor.submit("large", 100, () -> {});
+        executor.close();
+
+        Assert.assertTrue(maxRunning.get() <= 2);
+        Assert.assertEquals(21, executor.getCompleted());
+    }
+
+    @Test
+    public void testTreesOfADiffShareTheirLabels() throws Exception {
+        AtomicInteger shared = new AtomicInteger();
+        DiffExecutor executor = new DiffExecutor(2, 10, 60);
+        for (int i = 0; i < 4; i++) {
+            executor.submit("diff" + i, 1, () -> {
+                ITree src = new TreeContext().createTree(0, "a", null);
+                ITree dst = new TreeContext().createTree(0, "a", null);
+                if (src.getLabelPool() == dst.getLabelPool() && src.getLabelId() == dst.getLabelId())
+                    shared.incrementAndGet();
+            });
+        }
+        executor.close();
+
+        Assert.assertEquals(4, shared.get());
+        Assert.assertEquals(2D, executor.getLabelDedupRatio(), 0D);
+    }
+}
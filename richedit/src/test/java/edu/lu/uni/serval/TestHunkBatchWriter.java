@@ -0,0 +1,143 @@
+package edu.lu.uni.serval;
+
+import edu.lu.uni.serval.richedit.ediff.HunkBatchWriter;
+import edu.lu.uni.serval.richedit.store.DiffEntry;
+import edu.lu.uni.serval.richedit.store.HunkStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+
+public class TestHunkBatchWriter {
+
+    private static List<DiffEntry.Hunk> hunks(String name, int count) {
+        List<DiffEntry.Hunk> list = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            list.add(new DiffEntry.Hunk("IfStatement/2/" + name + "_" + i, "dump" + i, "action" + i, "target" + i, "shape" + i));
+        return list;
+    }
+
+    @Test
+    public void testFlushAtBatchSize() {
+        MemoryStore store = new MemoryStore();
+        try (HunkBatchWriter writer = new HunkBatchWriter(store, 3, 60000)) {
+            writer.write("a", hunks("a", 2));
+            Assert.assertEquals(0, store.getWrites());
+            writer.write("b", hunks("b", 1));
+            Assert.assertEquals(1, store.getWrites());
+            Assert.assertEquals(Arrays.asList("a", "b"), store.getWritten());
+        }
+        Assert.assertEquals(1, store.getWrites());
+    }
+
+    @Test
+    public void testFlushAfterInterval() throws Exception {
+        MemoryStore store = new MemoryStore();
+        try (HunkBatchWriter writer = new HunkBatchWriter(store, 1000, 50)) {
+            writer.write("a", hunks("a", 1));
+            long end = System.currentTimeMillis() + 5000;
+            while (store.getWrites() == 0 && System.currentTimeMillis() < end)
+                Thread.sleep(10);
+            Assert.assertEquals(Collections.singletonList("a"), store.getWritten());
+        }
+    }
+
+    @Test
+    public void testCloseFlushesAllThreads() throws Exception {
+        MemoryStore store = new MemoryStore();
+        HunkBatchWriter writer = new HunkBatchWriter(store, 1000, 60000);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String name = "t" + i;
+            threads.add(new Thread(() -> {
+                writer.write(name + "a", hunks(name + "a", 2));
+                writer.write(name + "b", hunks(name + "b", 2));
+            }));
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+        Assert.assertEquals(0, store.getWrites());
+
+        writer.close();
+        // one batch per thread
+        Assert.assertEquals(4, store.getWrites());
+        List<String> written = store.getWritten();
+        Assert.assertEquals(8, written.size());
+        Assert.assertEquals(8, new HashSet<>(written).size());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() {
+        MemoryStore store = new MemoryStore();
+        store.failures = 1;
+        try (HunkBatchWriter writer = new HunkBatchWriter(store, 1, 60000)) {
+            writer.write("a", hunks("a", 1));
+            Assert.assertEquals(0, store.getWrites());
+            writer.write("b", hunks("b", 1));
+            Assert.assertEquals(1, store.getWrites());
+        }
+        // nothing left to write on close, and nothing lost or written twice
+        Assert.assertEquals(1, store.getWrites());
+        Assert.assertEquals(Arrays.asList("a", "b"), store.getWritten());
+    }
+
+    /**
+     * Keeps the names of the written diff entries, and fails the given number of writes first.
+     */
+    private static class MemoryStore implements HunkStore {
+
+        private final List<List<String>> writes = new ArrayList<>();
+
+        private int failures = 0;
+
+        @Override
+        public synchronized void write(List<DiffEntry> entries) {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Store unavailable");
+            }
+            List<String> names = new ArrayList<>();
+            for (DiffEntry entry : entries)
+                names.add(entry.getName());
+            writes.add(names);
+        }
+
+        synchronized int getWrites() {
+            return writes.size();
+        }
+
+        synchronized List<String> getWritten() {
+            List<String> written = new ArrayList<>();
+            for (List<String> names : writes)
+                written.addAll(names);
+            return written;
+        }
+
+        @Override
+        public Set<String> getDiffEntries() {
+            return new HashSet<>(getWritten());
+        }
+
+        @Override
+        public Map<String, String> getTrees(String key) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String getDump(String key) {
+            return null;
+        }
+
+        @Override
+        public void scanTrees(BiConsumer<String, Map<String, String>> consumer) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
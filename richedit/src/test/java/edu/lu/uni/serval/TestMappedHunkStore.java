@@ -0,0 +1,111 @@
+package edu.lu.uni.serval;
+
+import edu.lu.uni.serval.richedit.store.DiffEntry;
+import edu.lu.uni.serval.richedit.store.MappedHunkStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.*;
+
+
+public class TestMappedHunkStore {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DiffEntry entry(String name, int hunks) {
+        List<DiffEntry.Hunk> list = new ArrayList<>();
+        for (int i = 0; i < hunks; i++) {
+            String key = "IfStatement/2/" + name + "_" + i;
+            list.add(new DiffEntry.Hunk(key, "UPD IfStatement@@" + name + i, "action" + i, "target" + i, "shape" + i));
+        }
+        return new DiffEntry(name, list);
+    }
+
+    @Test
+    public void testWriteAndReopen() throws Exception {
+        File dir = folder.newFolder();
+        try (MappedHunkStore store = new MappedHunkStore(dir, 512)) {
+            for (int i = 0; i < 20; i++)
+                store.write(Arrays.asList(entry("pj_a" + i + ".java.txt", 2), entry("pj_b" + i + ".java.txt", 1)));
+            Assert.assertEquals("UPD IfStatement@@pj_a3.java.txt1", store.getDump("IfStatement/2/pj_a3.java.txt_1"));
+        }
+        Assert.assertTrue("the log should roll over several segments", new File(dir, "segment-00002.log").exists());
+
+        try (MappedHunkStore store = new MappedHunkStore(dir, 512)) {
+            Assert.assertEquals(40, store.getDiffEntries().size());
+            Map<String, String> trees = store.getTrees("IfStatement/2/pj_b7.java.txt_0");
+            Assert.assertEquals("shape0", trees.get("shapeTree"));
+            Assert.assertEquals("action0", trees.get("actionTree"));
+            Assert.assertEquals("target0", trees.get("targetTree"));
+            Assert.assertEquals("UPD IfStatement@@pj_a19.java.txt0", store.getDump("IfStatement/2/pj_a19.java.txt_0"));
+            Assert.assertNull(store.getDump("IfStatement/2/unknown"));
+            Assert.assertTrue(store.getTrees("IfStatement/2/unknown").isEmpty());
+
+            Map<String, Map<String, String>> chunk = store.getTrees(Arrays.asList("IfStatement/2/pj_a3.java.txt_1", "IfStatement/2/unknown"));
+            Assert.assertEquals("shape1", chunk.get("IfStatement/2/pj_a3.java.txt_1").get("shapeTree"));
+            Assert.assertTrue(chunk.get("IfStatement/2/unknown").isEmpty());
+
+            Set<String> keys = new HashSet<>();
+            store.scanTrees((key, map) -> keys.add(key));
+            Assert.assertEquals(60, keys.size());
+        }
+    }
+
+    @Test
+    public void testFingerprintIsStored() throws Exception {
+        File dir = folder.newFolder();
+        try (MappedHunkStore store = new MappedHunkStore(dir)) {
+            store.write(Arrays.asList(entry("pj_a.java.txt", 1), new DiffEntry("pj_b.java.txt", Collections.singletonList(
+                    new DiffEntry.Hunk("IfStatement/2/pj_b.java.txt_0", "dump", "action", "target", "shape", "0123456789abcdef0123456789abcdef")))));
+        }
+        try (MappedHunkStore store = new MappedHunkStore(dir)) {
+            Assert.assertEquals("0123456789abcdef0123456789abcdef", store.getTrees("IfStatement/2/pj_b.java.txt_0").get("fingerprint"));
+            Assert.assertEquals("shape", store.getTrees("IfStatement/2/pj_b.java.txt_0").get("shapeTree"));
+            Assert.assertEquals("dump", store.getDump("IfStatement/2/pj_b.java.txt_0"));
+            Assert.assertFalse(store.getTrees("IfStatement/2/pj_a.java.txt_0").containsKey("fingerprint"));
+        }
+    }
+
+    @Test
+    public void testUncommittedTailIsDiscarded() throws Exception {
+        File dir = folder.newFolder();
+        try (MappedHunkStore store = new MappedHunkStore(dir, 4096)) {
+            store.write(Collections.singletonList(entry("pj_a.java.txt", 1)));
+            store.write(Collections.singletonList(entry("pj_b.java.txt", 1)));
+        }
+        // drop the commit record of the last batch, as if the process died before writing it
+        File segment = new File(dir, "segment-00000.log");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            int position = 0;
+            int lastCommit = 0;
+            while (true) {
+                file.seek(position);
+                int length = file.readInt();
+                file.skipBytes(4);
+                byte type = file.readByte();
+                if (length == 0 && type == 0)
+                    break;
+                if (type == 3)
+                    lastCommit = position;
+                position += 9 + length;
+            }
+            file.seek(lastCommit);
+            file.write(new byte[9]);
+        }
+
+        try (MappedHunkStore store = new MappedHunkStore(dir, 4096)) {
+            Assert.assertEquals(Collections.singleton("pj_a.java.txt"), store.getDiffEntries());
+            Assert.assertNull(store.getDump("IfStatement/2/pj_b.java.txt_0"));
+            store.write(Collections.singletonList(entry("pj_c.java.txt", 1)));
+        }
+        try (MappedHunkStore store = new MappedHunkStore(dir, 4096)) {
+            Assert.assertEquals(new HashSet<>(Arrays.asList("pj_a.java.txt", "pj_c.java.txt")), store.getDiffEntries());
+            Assert.assertEquals("shape0", store.getTrees("IfStatement/2/pj_c.java.txt_0").get("shapeTree"));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package edu.lu.uni.serval;
+
+import com.github.gumtreediff.gen.srcml.NodeMap_new;
+import edu.lu.uni.serval.utils.ASTNodeMap;
+import edu.lu.uni.serval.utils.EDiffHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class TestNodeMaps {
+
+    @Test
+    public void testReverseLookup() {
+        for (Map.Entry<Integer, String> entry : ASTNodeMap.map.entrySet())
+            Assert.assertEquals((int) entry.getKey(), EDiffHelper.getNodeType(entry.getValue(), true));
+        for (Map.Entry<Integer, String> entry : NodeMap_new.map.entrySet())
+            Assert.assertEquals((int) entry.getKey(), EDiffHelper.getNodeType(entry.getValue(), false));
+
+        Assert.assertTrue(NodeMap_new.isStatement("if_stmt"));
+        Assert.assertFalse(NodeMap_new.isStatement("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownType() {
+        ASTNodeMap.getType("NoSuchNode");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDuplicateNameIsRejected() {
+        Map<Integer, String> map = new HashMap<>();
+        map.put(1, "block");
+        map.put(2, "block");
+        NodeMap_new.reverse(map);
+    }
+}